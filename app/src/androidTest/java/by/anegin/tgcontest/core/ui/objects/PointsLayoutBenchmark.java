@@ -0,0 +1,131 @@
+package by.anegin.tgcontest.core.ui.objects;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares draw time and memory of line points stored as drawLines() segments (x0, y0, x1, y1, x1, y1, ...)
+ * and as compact x, y pairs expanded into segments of the visible window at draw time, as {@link Graph} does.
+ * <p>
+ * Results are written to logcat with tag "PointsLayoutBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class PointsLayoutBenchmark {
+
+    private static final String TAG = "PointsLayoutBenchmark";
+
+    private static final int POINTS_COUNT = 200_000;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 600;
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 30;
+
+    private float[] segments;       // old layout, every interior point is stored twice
+    private float[] points;         // compact layout
+
+    private Bitmap bitmap;
+    private Canvas canvas;
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Matrix matrix = new Matrix();
+
+    @Before
+    public void setUp() {
+        Random random = new Random(42);
+        points = new float[2 * POINTS_COUNT];
+        float y = 0f;
+        for (int i = 0; i < POINTS_COUNT; i++) {
+            y += random.nextFloat() - 0.5f;
+            points[2 * i] = i;
+            points[2 * i + 1] = y;
+        }
+
+        segments = new float[4 * (POINTS_COUNT - 1)];
+        System.arraycopy(points, 0, segments, 0, 2 * POINTS_COUNT);
+        PointsPyramid.expandToSegments(segments, POINTS_COUNT);
+
+        bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(bitmap);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(2f);
+    }
+
+    @After
+    public void tearDown() {
+        bitmap.recycle();
+    }
+
+    @Test
+    public void memory() {
+        long segmentsBytes = 4L * segments.length;
+        long pointsBytes = 4L * points.length;
+        Log.i(TAG, "memory of " + POINTS_COUNT + " points: segments " + segmentsBytes
+                + " bytes, compact " + pointsBytes + " bytes");
+        assertTrue(2 * pointsBytes <= segmentsBytes + 8);
+    }
+
+    @Test
+    public void drawWholeLine() {
+        compareDrawTime(0, POINTS_COUNT);
+    }
+
+    @Test
+    public void drawWindow() {
+        compareDrawTime(POINTS_COUNT / 2, 2 * WIDTH);
+    }
+
+    private void compareDrawTime(int firstPoint, int pointsCount) {
+        matrix.setScale((float) WIDTH / pointsCount, -10f);
+        matrix.postTranslate(-firstPoint * (float) WIDTH / pointsCount, HEIGHT / 2f);
+
+        // the same buffer is reused by both layouts, as by Graph
+        float[] buffer = new float[4 * (pointsCount - 1)];
+
+        long segmentsTime = measure(() -> {
+            matrix.mapPoints(buffer, 0, segments, 4 * firstPoint, 2 * (pointsCount - 1));
+            canvas.drawLines(buffer, 0, 4 * (pointsCount - 1), paint);
+        });
+        long pointsTime = measure(() -> {
+            matrix.mapPoints(buffer, 0, points, 2 * firstPoint, pointsCount);
+            int count = PointsPyramid.expandToSegments(buffer, pointsCount);
+            canvas.drawLines(buffer, 0, count, paint);
+        });
+
+        Log.i(TAG, "median draw time of " + pointsCount + " points: segments " + segmentsTime / 1000
+                + " us, compact " + pointsTime / 1000 + " us");
+    }
+
+    /**
+     * @return median time of one draw in nanoseconds
+     */
+    private long measure(Runnable draw) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            draw.run();
+        }
+        long[] times = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            canvas.drawColor(0xFFFFFFFF);
+            long start = System.nanoTime();
+            draw.run();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[ITERATIONS / 2];
+    }
+
+}
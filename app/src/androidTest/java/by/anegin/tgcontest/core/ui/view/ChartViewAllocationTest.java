@@ -0,0 +1,107 @@
+package by.anegin.tgcontest.core.ui.view;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import by.anegin.tgcontest.core.ui.model.UiChart;
+import by.anegin.tgcontest.data.model.Chart;
+import by.anegin.tgcontest.data.model.Column;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Counts objects allocated on UI thread by frames of a drag: range update, y scale calculation and drawing.
+ * <p>
+ * Chart is small enough for y scale to be calculated inline, and every visible range has the same max value,
+ * so grids are not replaced. The only object a frame allocates is the immutable state with the new range,
+ * which scale calculation may read on compute threads; everything else reuses objects of the previous frames.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChartViewAllocationTest {
+
+    private static final int POINTS_COUNT = 1000;
+    private static final int PEAK_PERIOD = 50;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 600;
+
+    private static final float RANGE_SIZE = 0.3f;
+    private static final int FRAMES = 300;
+
+    private ChartView chartView;
+    private Bitmap bitmap;
+    private Canvas canvas;
+
+    @Before
+    public void setUp() {
+        long[] x = new long[POINTS_COUNT];
+        long[] y0 = new long[POINTS_COUNT];
+        long[] y1 = new long[POINTS_COUNT];
+        for (int i = 0; i < POINTS_COUNT; i++) {
+            x[i] = 1_500_000_000_000L + i * DAY;
+            y0[i] = i % PEAK_PERIOD == 0 ? 100 : i % PEAK_PERIOD;
+            y1[i] = 2 * (i % (PEAK_PERIOD / 2));
+        }
+        List<Column.Line> lines = new ArrayList<>();
+        lines.add(new Column.Line("y0", "#0", 0xFF3DC23F, y0));
+        lines.add(new Column.Line("y1", "#1", 0xFFF34C44, y1));
+        UiChart uiChart = new UiChart(new Chart(new Column.X("x", x), lines));
+
+        bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(bitmap);
+
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            chartView = new ChartView(context);
+            chartView.setUiChart(uiChart, Collections.emptySet());
+            chartView.layout(0, 0, WIDTH, HEIGHT);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        bitmap.recycle();
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void dragAllocatesOnlyRangeStates() {
+        long[] allocations = new long[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            // fills pools and caches of the view and its renderer
+            drag();
+
+            Debug.startAllocCounting();
+            Debug.resetThreadAllocCount();
+            drag();
+            allocations[0] = Debug.getThreadAllocCount();
+            Debug.stopAllocCounting();
+        });
+        assertEquals("objects allocated by " + FRAMES + " frames", FRAMES, allocations[0]);
+    }
+
+    private void drag() {
+        float maxStart = 1f - RANGE_SIZE;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            float start = maxStart * frame / FRAMES;
+            chartView.setRange(start, start + RANGE_SIZE, true);
+            chartView.draw(canvas);
+        }
+    }
+
+}
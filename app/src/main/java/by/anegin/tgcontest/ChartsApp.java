@@ -14,6 +14,12 @@ public class ChartsApp extends Application {
         appComponent = new AppComponentImpl(this);
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        appComponent.onTrimMemory(level);
+    }
+
     public AppComponent getAppComponent() {
         return appComponent;
     }
@@ -1,5 +1,7 @@
 package by.anegin.tgcontest.core.di;
 
+import by.anegin.tgcontest.core.ui.ChartPreparer;
+import by.anegin.tgcontest.core.utils.ComputeScheduler;
 import by.anegin.tgcontest.data.DataRepository;
 import by.anegin.tgcontest.core.utils.ThemeHelper;
 
@@ -9,4 +11,13 @@ public interface AppComponent {
 
     ThemeHelper getThemeHelper();
 
+    ComputeScheduler getComputeScheduler();
+
+    ChartPreparer getChartPreparer();
+
+    /**
+     * Releases caches of created components, see {@link android.content.ComponentCallbacks2#onTrimMemory(int)}
+     */
+    void onTrimMemory(int level);
+
 }
\ No newline at end of file
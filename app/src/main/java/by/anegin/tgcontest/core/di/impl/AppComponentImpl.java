@@ -1,16 +1,29 @@
 package by.anegin.tgcontest.core.di.impl;
 
+import android.app.ActivityManager;
 import android.content.Context;
+import android.os.Build;
 import by.anegin.tgcontest.data.DataRepository;
 import by.anegin.tgcontest.data.source.DataSource;
 import by.anegin.tgcontest.data.source.impl.AssetsDataSource;
+import by.anegin.tgcontest.data.source.impl.CachedDataSource;
 import by.anegin.tgcontest.core.di.AppComponent;
+import by.anegin.tgcontest.core.ui.ChartPreparer;
+import by.anegin.tgcontest.core.utils.ComputeScheduler;
 import by.anegin.tgcontest.core.utils.ThemeHelper;
 
+import java.io.File;
+
 public class AppComponentImpl implements AppComponent {
 
+    // parts of app heap limit used by caches
+    private static final int CHARTS_CACHE_HEAP_DIVIDER = 16;
+    private static final int UI_CHARTS_CACHE_HEAP_DIVIDER = 8;
+
     private final Context appContext;
     private DataRepository dataRepositoryInstance;
+    private ComputeScheduler computeSchedulerInstance;
+    private ChartPreparer chartPreparerInstance;
 
     public AppComponentImpl(Context appContext) {
         this.appContext = appContext;
@@ -20,8 +33,10 @@ public class AppComponentImpl implements AppComponent {
     public DataRepository getDataRepository() {
         synchronized (this) {
             if (dataRepositoryInstance == null) {
-                DataSource dataSource = new AssetsDataSource(appContext, "chart_data.json");
-                dataRepositoryInstance = new DataRepository(dataSource);
+                AssetsDataSource assetsDataSource = new AssetsDataSource(appContext, "chart_data.json");
+                File cacheFile = new File(appContext.getCacheDir(), "chart_data.bin");
+                DataSource dataSource = new CachedDataSource(assetsDataSource, cacheFile);
+                dataRepositoryInstance = new DataRepository(dataSource, getHeapSize() / CHARTS_CACHE_HEAP_DIVIDER);
             }
             return dataRepositoryInstance;
         }
@@ -32,4 +47,45 @@ public class AppComponentImpl implements AppComponent {
         return new ThemeHelper(appContext);
     }
 
+    @Override
+    public ComputeScheduler getComputeScheduler() {
+        synchronized (this) {
+            if (computeSchedulerInstance == null) {
+                computeSchedulerInstance = new ComputeScheduler();
+            }
+            return computeSchedulerInstance;
+        }
+    }
+
+    @Override
+    public ChartPreparer getChartPreparer() {
+        synchronized (this) {
+            if (chartPreparerInstance == null) {
+                chartPreparerInstance = new ChartPreparer(getDataRepository(), getHeapSize() / UI_CHARTS_CACHE_HEAP_DIVIDER);
+            }
+            return chartPreparerInstance;
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        DataRepository dataRepository;
+        ChartPreparer chartPreparer;
+        synchronized (this) {
+            dataRepository = dataRepositoryInstance;
+            chartPreparer = chartPreparerInstance;
+        }
+        if (dataRepository != null) dataRepository.onTrimMemory(level);
+        if (chartPreparer != null) chartPreparer.onTrimMemory(level);
+    }
+
+    private long getHeapSize() {
+        ActivityManager activityManager = (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+        long heapSize = activityManager.getMemoryClass() * 1024L * 1024L;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && activityManager.isLowRamDevice()) {
+            heapSize /= 2;
+        }
+        return heapSize;
+    }
+
 }
\ No newline at end of file
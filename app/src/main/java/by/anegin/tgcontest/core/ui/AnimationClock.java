@@ -0,0 +1,227 @@
+package by.anegin.tgcontest.core.ui;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * Drives all animations of one chart from a single frame callback.
+ * <p>
+ * Tweens are slots in primitive arrays: owner takes a slot once with {@link #newTween(TweenListener)}
+ * and restarts it for every animation, so starting an animation doesn't allocate.
+ * On every frame all running tweens are advanced in one pass and then {@link OnFrameListener} is called once,
+ * so listeners of tweens should not invalidate by themselves.
+ * <p>
+ * Tweens are started on the next frame, even with zero duration, so listeners are never called from
+ * {@link #start(int, float, float, long, int)}. Must be used from UI thread only.
+ */
+public class AnimationClock {
+
+    public static final int INTERPOLATOR_LINEAR = 0;
+    public static final int INTERPOLATOR_ACCELERATE = 1;
+    public static final int INTERPOLATOR_DECELERATE = 2;
+
+    public interface TweenListener {
+        /**
+         * @param finished true for the last update, tween is not running anymore and may be started again
+         */
+        void onTweenUpdate(int tween, float value, boolean finished);
+    }
+
+    public interface OnFrameListener {
+        void onAnimationFrame();
+    }
+
+    private static final long FALLBACK_FRAME_DELAY = 16;    // ms, for devices without Choreographer
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final OnFrameListener onFrameListener;
+
+    private int tweensCount = 0;
+    private TweenListener[] listeners = new TweenListener[INITIAL_CAPACITY];
+    private long[] startTimes = new long[INITIAL_CAPACITY];     // nanos
+    private long[] durations = new long[INITIAL_CAPACITY];      // nanos
+    private float[] fromValues = new float[INITIAL_CAPACITY];
+    private float[] toValues = new float[INITIAL_CAPACITY];
+    private int[] interpolators = new int[INITIAL_CAPACITY];
+    private boolean[] running = new boolean[INITIAL_CAPACITY];
+    private int runningCount = 0;
+
+    private boolean paused = false;
+    private long pauseTime;
+
+    private boolean frameScheduled = false;
+    private Choreographer.FrameCallback frameCallback;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable frameRunnable = () -> doFrame(System.nanoTime());
+
+    public AnimationClock(OnFrameListener onFrameListener) {
+        this.onFrameListener = onFrameListener;
+    }
+
+    /**
+     * Takes a new tween slot, slot is owned by the listener for the lifetime of the clock
+     */
+    public int newTween(TweenListener listener) {
+        if (tweensCount == listeners.length) {
+            grow(tweensCount * 2);
+        }
+        listeners[tweensCount] = listener;
+        return tweensCount++;
+    }
+
+    /**
+     * (Re)starts the tween, running animation of the tween is replaced
+     */
+    public void start(int tween, float from, float to, long durationMillis, int interpolator) {
+        if (!running[tween]) {
+            running[tween] = true;
+            runningCount++;
+        }
+        startTimes[tween] = paused ? pauseTime : System.nanoTime();
+        durations[tween] = durationMillis * 1_000_000L;
+        fromValues[tween] = from;
+        toValues[tween] = to;
+        interpolators[tween] = interpolator;
+        scheduleFrame();
+    }
+
+    /**
+     * Stops the tween without calling its listener
+     */
+    public void cancel(int tween) {
+        if (running[tween]) {
+            running[tween] = false;
+            runningCount--;
+        }
+    }
+
+    public boolean isRunning(int tween) {
+        return running[tween];
+    }
+
+    /**
+     * Freezes all tweens, they continue from the same point after {@link #resume()}
+     */
+    public void pause() {
+        if (paused) return;
+        paused = true;
+        pauseTime = System.nanoTime();
+        unscheduleFrame();
+    }
+
+    public void resume() {
+        if (!paused) return;
+        paused = false;
+        long pausedTime = System.nanoTime() - pauseTime;
+        for (int i = 0; i < tweensCount; i++) {
+            if (running[i]) startTimes[i] += pausedTime;
+        }
+        scheduleFrame();
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    private void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (paused) return;
+
+        // listeners may start and cancel tweens, started ones are advanced in this pass if they are further in arrays
+        for (int i = 0; i < tweensCount; i++) {
+            if (!running[i]) continue;
+
+            long elapsed = frameTimeNanos - startTimes[i];
+            boolean finished = elapsed >= durations[i];
+            float value;
+            if (finished) {
+                running[i] = false;
+                runningCount--;
+                value = toValues[i];
+            } else {
+                float fraction = elapsed > 0 ? (float) elapsed / durations[i] : 0f;
+                value = fromValues[i] + (toValues[i] - fromValues[i]) * interpolate(interpolators[i], fraction);
+            }
+            listeners[i].onTweenUpdate(i, value, finished);
+        }
+
+        onFrameListener.onAnimationFrame();
+
+        if (runningCount > 0) {
+            scheduleFrame();
+        }
+    }
+
+    private void scheduleFrame() {
+        if (frameScheduled || paused || runningCount == 0) return;
+        frameScheduled = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (frameCallback == null) {
+                frameCallback = this::doFrame;
+            }
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        } else {
+            handler.postDelayed(frameRunnable, FALLBACK_FRAME_DELAY);
+        }
+    }
+
+    private void unscheduleFrame() {
+        if (!frameScheduled) return;
+        frameScheduled = false;
+        if (frameCallback != null) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+        }
+        handler.removeCallbacks(frameRunnable);
+    }
+
+    private void grow(int capacity) {
+        TweenListener[] newListeners = new TweenListener[capacity];
+        System.arraycopy(listeners, 0, newListeners, 0, tweensCount);
+        listeners = newListeners;
+        startTimes = copyOf(startTimes, capacity);
+        durations = copyOf(durations, capacity);
+        fromValues = copyOf(fromValues, capacity);
+        toValues = copyOf(toValues, capacity);
+        interpolators = copyOf(interpolators, capacity);
+        boolean[] newRunning = new boolean[capacity];
+        System.arraycopy(running, 0, newRunning, 0, tweensCount);
+        running = newRunning;
+    }
+
+    private long[] copyOf(long[] array, int capacity) {
+        long[] newArray = new long[capacity];
+        System.arraycopy(array, 0, newArray, 0, tweensCount);
+        return newArray;
+    }
+
+    private float[] copyOf(float[] array, int capacity) {
+        float[] newArray = new float[capacity];
+        System.arraycopy(array, 0, newArray, 0, tweensCount);
+        return newArray;
+    }
+
+    private int[] copyOf(int[] array, int capacity) {
+        int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, tweensCount);
+        return newArray;
+    }
+
+    /**
+     * Same curves as default {@link android.view.animation.AccelerateInterpolator}
+     * and {@link android.view.animation.DecelerateInterpolator}
+     */
+    private static float interpolate(int interpolator, float fraction) {
+        switch (interpolator) {
+            case INTERPOLATOR_ACCELERATE:
+                return fraction * fraction;
+            case INTERPOLATOR_DECELERATE:
+                return 1f - (1f - fraction) * (1f - fraction);
+            default:
+                return fraction;
+        }
+    }
+
+}
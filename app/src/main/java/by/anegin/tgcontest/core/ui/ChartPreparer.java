@@ -0,0 +1,258 @@
+package by.anegin.tgcontest.core.ui;
+
+import android.content.ComponentCallbacks2;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import by.anegin.tgcontest.core.ui.model.UiChart;
+import by.anegin.tgcontest.core.utils.MemoryLruCache;
+import by.anegin.tgcontest.data.DataRepository;
+import by.anegin.tgcontest.data.model.Chart;
+
+/**
+ * Builds {@link UiChart}s in background and keeps recently used ones, app-wide.
+ * <p>
+ * Requested chart is built first, then its neighbours are prefetched, so switching to the next or
+ * the previous chart shows it immediately. Every request starts a new generation: not yet started prefetches
+ * of older generations are dropped and their requested charts are not delivered, charts which are already built
+ * are still cached, and decoded charts which are not needed anymore are not built.
+ * <p>
+ * Charts are built one at a time on a thread of their own, not on the compute pool, which may have a single thread
+ * and is used by y scale calculations of shown charts. Prefetches run with the lowest priority.
+ * <p>
+ * Cache is bounded by estimated memory of charts. Built charts are the most expensive data to rebuild,
+ * so on memory pressure they are evicted after decoded charts of {@link DataRepository}.
+ */
+public class ChartPreparer {
+
+    public interface Callback {
+        void onChartPrepared(int index, UiChart uiChart);
+
+        void onChartError(int index);
+    }
+
+    private static final int PREFETCH_DISTANCE = 1;
+
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private final DataRepository dataRepository;
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "ChartPreparer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+
+    private final MemoryLruCache<Integer, UiChart> cache;
+
+    // all fields below are guarded by this
+
+    private long generation = 0;
+    private Callback callback;
+    private int requestedIndex = -1;    // chart to be delivered to callback, -1 if it is delivered already
+    private final ArrayDeque<Integer> prefetchIndices = new ArrayDeque<>();
+    private boolean working = false;
+
+    public ChartPreparer(DataRepository dataRepository, long cacheSize) {
+        this.dataRepository = dataRepository;
+        cache = new MemoryLruCache<>(cacheSize, UiChart::getByteCount);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Delivers chart to callback on UI thread, immediately if it is cached, and replaces previous request.
+     * Must be called from UI thread.
+     */
+    public void prepare(int index, Callback callback) {
+        UiChart cachedChart;
+        synchronized (this) {
+            generation++;
+            this.callback = callback;
+
+            cachedChart = cache.get(index);
+            requestedIndex = cachedChart == null ? index : -1;
+
+            startWork(index);
+        }
+        if (cachedChart != null) {
+            callback.onChartPrepared(index, cachedChart);
+        }
+    }
+
+    /**
+     * Builds chart which is decoded already on the calling thread, e.g. while the rest of data is being read,
+     * and delivers it to callback on UI thread. Replaces previous request, like {@link #prepare(int, Callback)}.
+     */
+    public void prepare(int index, Chart chart, Callback callback) {
+        UiChart uiChart = new UiChart(chart);
+        long buildGeneration;
+        synchronized (this) {
+            cache.put(index, uiChart);
+
+            generation++;
+            buildGeneration = generation;
+            this.callback = callback;
+            requestedIndex = -1;
+
+            startWork(index);
+        }
+        deliver(index, uiChart, buildGeneration);
+    }
+
+    /**
+     * Stops delivering to the callback, charts which are being built are still cached
+     */
+    public void cancel(Callback callback) {
+        synchronized (this) {
+            if (this.callback != callback) return;
+            generation++;
+            this.callback = null;
+            requestedIndex = -1;
+        }
+    }
+
+    /**
+     * Drops prefetched charts when memory is low, and all charts in critical state or in background.
+     * Charts which are shown are still referenced by views, they are just rebuilt when shown again.
+     *
+     * @param level one of {@link ComponentCallbacks2} TRIM_MEMORY_* levels
+     */
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            cache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToFraction(0.5f);
+        } else {
+            return;
+        }
+        synchronized (this) {
+            prefetchIndices.clear();
+        }
+    }
+
+    /**
+     * Replaces prefetched charts with neighbours of the chart, must be called under lock
+     */
+    private void startWork(int index) {
+        prefetchIndices.clear();
+        for (int distance = 1; distance <= PREFETCH_DISTANCE; distance++) {
+            prefetchIndices.add(index + distance);
+            prefetchIndices.add(index - distance);
+        }
+
+        if (!working) {
+            working = true;
+            executor.execute(this::work);
+        }
+    }
+
+    private void work() {
+        try {
+            while (true) {
+                int index;
+                long takeGeneration;
+                boolean requested;
+                synchronized (this) {
+                    index = takeNextIndex();
+                    if (index == -1) {
+                        working = false;
+                        return;
+                    }
+                    takeGeneration = generation;
+                    requested = index == requestedIndex;
+                }
+                Process.setThreadPriority(requested ? Process.THREAD_PRIORITY_BACKGROUND : Process.THREAD_PRIORITY_LOWEST);
+                build(index, takeGeneration);
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                working = false;
+            }
+            throw e;
+        }
+    }
+
+    private int takeNextIndex() {
+        if (requestedIndex != -1) {
+            return requestedIndex;
+        }
+        Integer index;
+        while ((index = prefetchIndices.poll()) != null) {
+            if (index >= 0 && !cache.contains(index)) return index;
+        }
+        return -1;
+    }
+
+    /**
+     * @param takeGeneration generation in which the chart was taken for building
+     */
+    private void build(int index, long takeGeneration) {
+        UiChart uiChart = null;
+        boolean failed = false;
+        try {
+            Chart chart = dataRepository.getChart(index);
+            synchronized (this) {
+                if (!isNeeded(index, takeGeneration)) return;
+            }
+            if (chart != null) {
+                uiChart = new UiChart(chart);
+            }
+        } catch (IOException e) {
+            failed = true;
+        }
+
+        long buildGeneration;
+        synchronized (this) {
+            if (uiChart != null) {
+                cache.put(index, uiChart);
+            }
+            // prefetched chart may be the requested one
+            if (index != requestedIndex) return;
+            requestedIndex = -1;
+            buildGeneration = generation;
+        }
+
+        if (uiChart == null && !failed) return;   // no such chart
+
+        deliver(index, uiChart, buildGeneration);
+    }
+
+    /**
+     * False if another chart was requested after the chart was taken and the chart is neither requested
+     * nor prefetched now, must be called under lock
+     */
+    private boolean isNeeded(int index, long takeGeneration) {
+        return generation == takeGeneration || index == requestedIndex || prefetchIndices.contains(index);
+    }
+
+    /**
+     * Posts chart to callback if no other chart is requested after it, null chart is delivered as error
+     */
+    private void deliver(int index, UiChart preparedChart, long buildGeneration) {
+        uiHandler.post(() -> {
+            Callback callback;
+            synchronized (this) {
+                if (generation != buildGeneration) return;
+                callback = this.callback;
+            }
+            if (callback == null) return;
+            if (preparedChart != null) {
+                callback.onChartPrepared(index, preparedChart);
+            } else {
+                callback.onChartError(index);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,163 @@
+package by.anegin.tgcontest.core.ui;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.SurfaceTexture;
+import android.os.Process;
+import android.view.TextureView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import by.anegin.tgcontest.core.ui.model.ChartFrame;
+import by.anegin.tgcontest.core.ui.objects.ChartRenderer;
+
+/**
+ * Draws published {@link ChartFrame}s into a {@link TextureView} on a dedicated thread.
+ * <p>
+ * Only the latest frame is drawn, frames published while previous one is being drawn are skipped.
+ * Skipped and drawn frames are returned to the pool and given out again by {@link #obtainFrame()}.
+ */
+public class ChartRenderThread extends Thread implements TextureView.SurfaceTextureListener {
+
+    private final TextureView textureView;
+    private final ChartRenderer renderer;
+
+    private final Object frameLock = new Object();
+    private ChartFrame pendingFrame;        // guarded by frameLock
+    private ChartFrame lastFrame;           // guarded by frameLock
+    private boolean surfaceAvailable;       // guarded by frameLock
+    private boolean quit = false;           // guarded by frameLock
+    private final List<ChartFrame> freeFrames = new ArrayList<>();     // guarded by frameLock
+
+    // held while drawing, so surface is not destroyed in the middle of a frame
+    private final Object surfaceLock = new Object();
+
+    public ChartRenderThread(TextureView textureView, ChartRenderer renderer) {
+        super("ChartRenderThread");
+        this.textureView = textureView;
+        this.renderer = renderer;
+        surfaceAvailable = textureView.isAvailable();
+        textureView.setOpaque(false);
+        textureView.setSurfaceTextureListener(this);
+    }
+
+    /**
+     * Frame which is not used by this thread anymore and may be filled for {@link #publish(ChartFrame)}
+     */
+    public ChartFrame obtainFrame() {
+        synchronized (frameLock) {
+            int size = freeFrames.size();
+            return size > 0 ? freeFrames.remove(size - 1) : new ChartFrame();
+        }
+    }
+
+    /**
+     * Replaces pending frame, frame must not be changed after that
+     */
+    public void publish(ChartFrame frame) {
+        synchronized (frameLock) {
+            recycleFrame(pendingFrame);
+            pendingFrame = frame;
+            frameLock.notify();
+        }
+    }
+
+    public void quit() {
+        synchronized (frameLock) {
+            quit = true;
+            frameLock.notify();
+        }
+        textureView.setSurfaceTextureListener(null);
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+        while (true) {
+            ChartFrame frame;
+            synchronized (frameLock) {
+                while (!quit && (pendingFrame == null || !surfaceAvailable)) {
+                    try {
+                        frameLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (quit) break;
+                frame = pendingFrame;
+                pendingFrame = null;
+                if (lastFrame != frame) {
+                    recycleFrame(lastFrame);
+                    lastFrame = frame;
+                }
+            }
+            drawFrame(frame);
+        }
+        renderer.releaseGraphs();
+    }
+
+    private void drawFrame(ChartFrame frame) {
+        synchronized (surfaceLock) {
+            synchronized (frameLock) {
+                if (!surfaceAvailable) return;
+            }
+            Canvas canvas = textureView.lockCanvas();
+            if (canvas == null) return;
+            try {
+                canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                renderer.draw(canvas, frame);
+            } finally {
+                textureView.unlockCanvasAndPost(canvas);
+            }
+        }
+    }
+
+    // must be called with frameLock held
+    private void recycleFrame(ChartFrame frame) {
+        if (frame != null && frame != lastFrame) {
+            frame.popupData = null;
+            freeFrames.add(frame);
+        }
+    }
+
+    private void redrawLastFrame() {
+        if (pendingFrame == null && lastFrame != null) {
+            pendingFrame = lastFrame;
+        }
+        frameLock.notify();
+    }
+
+    // ========
+
+    @Override
+    public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+        synchronized (frameLock) {
+            surfaceAvailable = true;
+            redrawLastFrame();
+        }
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+        synchronized (frameLock) {
+            redrawLastFrame();
+        }
+    }
+
+    @Override
+    public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+        synchronized (surfaceLock) {
+            synchronized (frameLock) {
+                surfaceAvailable = false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+    }
+
+}
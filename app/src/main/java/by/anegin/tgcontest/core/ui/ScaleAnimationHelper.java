@@ -1,94 +1,155 @@
 package by.anegin.tgcontest.core.ui;
 
-import android.animation.ValueAnimator;
 import android.os.Handler;
 import android.os.Looper;
-import android.view.animation.LinearInterpolator;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicLong;
+import by.anegin.tgcontest.core.utils.ComputeScheduler;
 
-public class ScaleAnimationHelper {
+/**
+ * Calculates y scale on {@link ComputeScheduler} and animates it.
+ * <p>
+ * Called on every frame of a drag, so calculation job, results and the runnable applying them are allocated once.
+ */
+public class ScaleAnimationHelper implements AnimationClock.TweenListener {
 
     public static class CalcResult {
-        public final float targetScale;
-        public final float maxY;
+        public float targetScale;
+        public float maxY;
 
-        public CalcResult(float targetScale, float maxY) {
+        public void set(float targetScale, float maxY) {
             this.targetScale = targetScale;
             this.maxY = maxY;
         }
+
+        private void set(CalcResult other) {
+            set(other.targetScale, other.maxY);
+        }
     }
 
     public interface Callback {
-        CalcResult calculateNewScale();
+        /**
+         * Fills result, called on a background thread or on the thread calling {@link #calculate(boolean)}
+         */
+        void calculateNewScale(CalcResult result);
+
+        /**
+         * Number of values calculation works with, small calculations are done on the calling thread
+         */
+        int getCalculationSize();
 
         float getCurrentScale();
 
+        /**
+         * Result is reused by the next update, it must not be kept
+         */
         void onScaleUpdated(float scale, CalcResult calcResult);
     }
 
     private final Callback callback;
+    private final ComputeScheduler computeScheduler;
+    private final AnimationClock animationClock;
     private final long animateDuration;
 
     private final Handler uiHandler = new Handler(Looper.getMainLooper());
 
-    private final ExecutorService scaleCalculateExecutor = Executors.newFixedThreadPool(2);
-    private final AtomicLong lastCalculateGeneration = new AtomicLong(0);
-    private Future<?> scaleCalculationTask;
+    private final Runnable calculateJob = this::runCalculation;
+    private final Runnable applyResult = this::applyPendingResult;
+
+    // filled by calculation job only, jobs of this helper never run at the same time
+    private final CalcResult jobResult = new CalcResult();
+
+    // all fields below are guarded by this
+
+    private long generation = 0;
+    private boolean animateYScale;
+    private final CalcResult pendingResult = new CalcResult();
+    private long pendingGeneration = -1;    // generation of pending result, -1 if it is applied already
 
-    private ValueAnimator scaleAnimator;
-    private float scaleAnimTo;
+    // used on UI thread only
 
-    public ScaleAnimationHelper(Callback callback, long animateDuration) {
+    private final CalcResult appliedResult = new CalcResult();
+
+    private final int scaleTween;
+    private final CalcResult animatedCalcResult = new CalcResult();
+
+    public ScaleAnimationHelper(Callback callback, ComputeScheduler computeScheduler, AnimationClock animationClock, long animateDuration) {
         this.callback = callback;
+        this.computeScheduler = computeScheduler;
+        this.animationClock = animationClock;
         this.animateDuration = animateDuration;
+        scaleTween = animationClock.newTween(this);
     }
 
     public void calculate(boolean animateYScale) {
-        long calculateGeneration = lastCalculateGeneration.incrementAndGet();
+        synchronized (this) {
+            generation++;
+            this.animateYScale = animateYScale;
+        }
+
+        // pending calculation of this helper is replaced by the new one
+        computeScheduler.submitLatest(this, callback.getCalculationSize(), calculateJob);
+    }
+
+    /**
+     * Cancels pending calculation and running animation
+     */
+    public void cancel() {
+        synchronized (this) {
+            generation++;
+        }
+        computeScheduler.cancel(this);
+        animationClock.cancel(scaleTween);
+    }
+
+    private void runCalculation() {
+        long calculateGeneration;
+        synchronized (this) {
+            calculateGeneration = generation;
+        }
+
+        callback.calculateNewScale(jobResult);
+
+        synchronized (this) {
+            if (generation != calculateGeneration) return;
+            pendingResult.set(jobResult);
+            pendingGeneration = calculateGeneration;
+        }
 
-        if (scaleCalculationTask != null) {
-            scaleCalculationTask.cancel(true);
-            scaleCalculationTask = null;
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            applyPendingResult();
+        } else {
+            uiHandler.post(applyResult);
         }
+    }
 
-        scaleCalculationTask = scaleCalculateExecutor.submit(() -> {
-            CalcResult calcResult = callback.calculateNewScale();
-            if (lastCalculateGeneration.get() == calculateGeneration) {
-                uiHandler.post(() -> {
-                    if (animateYScale) {
-                        animateYScale(calcResult);
-                    } else {
-                        callback.onScaleUpdated(calcResult.targetScale, calcResult);
-                    }
-                });
-            }
-        });
+    private void applyPendingResult() {
+        boolean animate;
+        synchronized (this) {
+            // result of an older background calculation may be posted after result of a newer inline one
+            if (pendingGeneration != generation) return;
+            pendingGeneration = -1;
+            appliedResult.set(pendingResult);
+            animate = animateYScale;
+        }
+        if (animate) {
+            animateYScale(appliedResult);
+        } else {
+            callback.onScaleUpdated(appliedResult.targetScale, appliedResult);
+        }
     }
 
     private void animateYScale(CalcResult calcResult) {
-        float fromScale = callback.getCurrentScale();
-        if (scaleAnimator != null && scaleAnimator.isRunning()) {
-            if (scaleAnimTo != calcResult.targetScale) {
-                scaleAnimator.cancel();
-                scaleAnimator = null;
-            } else {
-                return;
-            }
+        if (animationClock.isRunning(scaleTween) && animatedCalcResult.targetScale == calcResult.targetScale) {
+            return;
         }
-        scaleAnimTo = calcResult.targetScale;
-
-        scaleAnimator = ValueAnimator.ofFloat(fromScale, calcResult.targetScale);
-        scaleAnimator.setInterpolator(new LinearInterpolator());
-        scaleAnimator.setDuration(animateDuration);
-        scaleAnimator.addUpdateListener(animation -> {
-            float scale = (float) animation.getAnimatedValue();
-            callback.onScaleUpdated(scale, calcResult);
-        });
-        scaleAnimator.start();
+        animatedCalcResult.set(calcResult);
+        animationClock.start(scaleTween, callback.getCurrentScale(), calcResult.targetScale,
+                animateDuration, AnimationClock.INTERPOLATOR_LINEAR);
+    }
+
+    @Override
+    public void onTweenUpdate(int tween, float value, boolean finished) {
+        callback.onScaleUpdated(value, animatedCalcResult);
     }
 
 }
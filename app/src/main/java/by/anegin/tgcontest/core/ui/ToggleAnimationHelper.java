@@ -1,12 +1,6 @@
 package by.anegin.tgcontest.core.ui;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ValueAnimator;
-import android.view.animation.AccelerateInterpolator;
-import android.view.animation.DecelerateInterpolator;
-import android.view.animation.Interpolator;
-import by.anegin.tgcontest.core.ui.objects.Graph;
+import by.anegin.tgcontest.core.ui.objects.GraphState;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -14,103 +8,100 @@ import java.util.Map;
 public class ToggleAnimationHelper {
 
     public interface Callback {
-        Graph getGraph(String id);
+        GraphState getGraph(String id);
 
         void onGraphToggled();
-
-        void onGraphUpdated();
     }
 
     private final Callback callback;
+    private final AnimationClock animationClock;
     private final long animationDuration;
 
-    public ToggleAnimationHelper(Callback callback, long animationDuration) {
+    public ToggleAnimationHelper(Callback callback, AnimationClock animationClock, long animationDuration) {
         this.callback = callback;
+        this.animationClock = animationClock;
         this.animationDuration = animationDuration;
     }
 
-    private final Map<String, ValueAnimator> hideAnimators = new HashMap<>();
-    private final Map<String, ValueAnimator> showAnimators = new HashMap<>();
+    // one toggle per graph id, reused for every hiding and showing of the graph
+    private final Map<String, Toggle> toggles = new HashMap<>();
 
     public void hideGraph(String id) {
-        Graph graph = callback.getGraph(id);
+        GraphState graph = callback.getGraph(id);
         if (graph == null) return;
 
-        if (graph.state != Graph.STATE_HIDING) {
-            graph.state = Graph.STATE_HIDING;
+        if (graph.state != GraphState.STATE_HIDING) {
+            graph.state = GraphState.STATE_HIDING;
             callback.onGraphToggled();
         }
 
-        // cancel show animation if exists
-        ValueAnimator showAnimation = showAnimators.remove(id);
-        if (showAnimation != null && showAnimation.isRunning()) {
-            showAnimation.cancel();
-        }
-
-        // add hide animation if not exists
-        if (!hideAnimators.containsKey(id)) {
-            ValueAnimator hideAnimation = makeToggleAnimation(graph, 0f,
-                    Graph.STATE_HIDING, Graph.STATE_HIDDEN,
-                    new DecelerateInterpolator(),
-                    () -> hideAnimators.remove(id));
-            hideAnimators.put(id, hideAnimation);
-            hideAnimation.start();
-        }
+        // replaces show animation if exists
+        getToggle(id).start(graph, 0f, GraphState.STATE_HIDING, GraphState.STATE_HIDDEN, AnimationClock.INTERPOLATOR_DECELERATE);
     }
 
     public void showGraph(String id) {
-        Graph graph = callback.getGraph(id);
+        GraphState graph = callback.getGraph(id);
         if (graph == null) return;
 
-        if (graph.state != Graph.STATE_SHOWING) {
-            graph.state = Graph.STATE_SHOWING;
+        if (graph.state != GraphState.STATE_SHOWING) {
+            graph.state = GraphState.STATE_SHOWING;
             callback.onGraphToggled();
         }
 
-        // cancel hide animation if exists
-        ValueAnimator hideAnimation = hideAnimators.remove(id);
-        if (hideAnimation != null && hideAnimation.isRunning()) {
-            hideAnimation.cancel();
+        // replaces hide animation if exists
+        getToggle(id).start(graph, 1f, GraphState.STATE_SHOWING, GraphState.STATE_VISIBLE, AnimationClock.INTERPOLATOR_ACCELERATE);
+    }
+
+    /**
+     * Stops all animations, graphs are left in their current states
+     */
+    public void cancel() {
+        for (Toggle toggle : toggles.values()) {
+            animationClock.cancel(toggle.tween);
         }
+    }
 
-        // add show animation if not exists
-        if (!showAnimators.containsKey(id)) {
-            ValueAnimator showAnimation = makeToggleAnimation(graph, 1f,
-                    Graph.STATE_SHOWING, Graph.STATE_VISIBLE,
-                    new AccelerateInterpolator(),
-                    () -> showAnimators.remove(id));
-            showAnimators.put(id, showAnimation);
-            showAnimation.start();
+    private Toggle getToggle(String id) {
+        Toggle toggle = toggles.get(id);
+        if (toggle == null) {
+            toggle = new Toggle();
+            toggles.put(id, toggle);
         }
+        return toggle;
     }
 
-    private ValueAnimator makeToggleAnimation(Graph graph, float endValue, int progressState, int finalState, Interpolator interpolator, Runnable onEndAction) {
-        float startValue = graph.alpha;
-        long duration = (long) (animationDuration * Math.abs(endValue - startValue));
-
-        ValueAnimator anim = ValueAnimator.ofFloat(startValue, endValue);
-        anim.setInterpolator(interpolator);
-        anim.setDuration(duration);
-        anim.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                onEndAction.run();
-                if (graph.state == progressState) {
-                    graph.state = finalState;
-                    graph.alpha = endValue;
-                    callback.onGraphUpdated();
-                }
+    private class Toggle implements AnimationClock.TweenListener {
+
+        private final int tween = animationClock.newTween(this);
+
+        private GraphState graph;
+        private int progressState;
+        private int finalState;
+
+        private void start(GraphState graph, float endValue, int progressState, int finalState, int interpolator) {
+            // same animation is already running
+            if (animationClock.isRunning(tween) && this.graph == graph && this.progressState == progressState) return;
+
+            this.graph = graph;
+            this.progressState = progressState;
+            this.finalState = finalState;
+
+            float startValue = graph.alpha;
+            long duration = (long) (animationDuration * Math.abs(endValue - startValue));
+            animationClock.start(tween, startValue, endValue, duration, interpolator);
+        }
+
+        @Override
+        public void onTweenUpdate(int tween, float value, boolean finished) {
+            if (graph.state != progressState) {
+                animationClock.cancel(tween);
+                return;
             }
-        });
-        anim.addUpdateListener(animation -> {
-            if (graph.state == progressState) {
-                graph.alpha = (float) animation.getAnimatedValue();
-                callback.onGraphUpdated();
-            } else {
-                animation.cancel();
+            graph.alpha = value;
+            if (finished) {
+                graph.state = finalState;
             }
-        });
-        return anim;
+        }
     }
 
 }
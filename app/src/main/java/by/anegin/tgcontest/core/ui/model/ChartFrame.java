@@ -0,0 +1,78 @@
+package by.anegin.tgcontest.core.ui.model;
+
+import by.anegin.tgcontest.core.ui.objects.GraphGeometry;
+import by.anegin.tgcontest.core.ui.objects.Popup;
+
+/**
+ * Snapshot of everything {@link by.anegin.tgcontest.core.ui.view.ChartView} draws in one frame,
+ * so it can be drawn by another thread while the view keeps changing.
+ * <p>
+ * Frames are reused to avoid allocations, but frame is never changed after it is published to the drawing thread
+ * and until it is returned back.
+ */
+public class ChartFrame {
+
+    public int width;
+    public int height;
+
+    public float xOffs;
+    public float xScale;
+    public float yScale;
+    public float pointsPerPixel;
+    public float contentWidth;          // width of the whole chart in current x scale
+
+    // visible graphs
+    public int graphsCount;
+    public GraphGeometry[] graphs = new GraphGeometry[0];
+    public float[] graphAlphas = new float[0];
+
+    // date labels, including first and last dates; x is the left edge of the text in unshifted canvas coordinates
+    public int labelsCount;
+    public String[] labelTexts = new String[0];
+    public float[] labelXs = new float[0];
+    public float[] labelAlphas = new float[0];
+
+    // lines of all grids
+    public int gridLinesCount;
+    public float[] gridLevels = new float[0];
+    public String[] gridTitles = new String[0];
+    public float[] gridAlphas = new float[0];
+
+    public Popup.Data popupData;        // null or own copy of the selected point
+    private final Popup.Data popupDataCopy = new Popup.Data();
+
+    public void setPopupData(Popup.Data data) {
+        if (data != null) {
+            popupDataCopy.copyFrom(data);
+            popupData = popupDataCopy;
+        } else {
+            popupData = null;
+        }
+    }
+
+    /**
+     * Sets counts of graphs, labels and grid lines, growing arrays if needed
+     */
+    public void setCounts(int graphsCount, int labelsCount, int gridLinesCount) {
+        this.graphsCount = graphsCount;
+        if (graphs.length < graphsCount) {
+            graphs = new GraphGeometry[graphsCount];
+            graphAlphas = new float[graphsCount];
+        }
+        this.labelsCount = labelsCount;
+        if (labelTexts.length < labelsCount) {
+            int capacity = labelsCount * 2;
+            labelTexts = new String[capacity];
+            labelXs = new float[capacity];
+            labelAlphas = new float[capacity];
+        }
+        this.gridLinesCount = gridLinesCount;
+        if (gridLevels.length < gridLinesCount) {
+            int capacity = gridLinesCount * 2;
+            gridLevels = new float[capacity];
+            gridTitles = new String[capacity];
+            gridAlphas = new float[capacity];
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package by.anegin.tgcontest.core.ui.model;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Texts of dates, formatted on first request.
+ * <p>
+ * Cache is bounded and keyed by calendar day, so all timestamps of one day share one string.
+ * Slot is the day modulo cache size, so consecutive days never collide and texts of a range of days
+ * prepared by {@link #prepare(long, long, long)} stay cached together. Must be used from UI thread only.
+ */
+class DateTextCache {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final SimpleDateFormat format;
+    private final TimeZone timeZone;
+
+    private final int slotMask;
+    private final long[] days;
+    private final String[] texts;
+
+    private final Date date = new Date();
+
+    DateTextCache(String pattern, int cacheBits) {
+        format = new SimpleDateFormat(pattern, Locale.US);
+        timeZone = format.getTimeZone();
+        slotMask = (1 << cacheBits) - 1;
+        days = new long[1 << cacheBits];
+        texts = new String[1 << cacheBits];
+    }
+
+    String get(long timestamp) {
+        long day = getDay(timestamp);
+        int slot = (int) (day & slotMask);
+        String text = texts[slot];
+        if (text == null || days[slot] != day) {
+            text = format(timestamp, day, slot);
+        }
+        return text;
+    }
+
+    /**
+     * Formats texts of days from fromTimestamp to toTimestamp which are not cached, so requests of these days
+     * don't allocate. If there are more days than the cache holds, only days around centerTimestamp are formatted.
+     */
+    void prepare(long fromTimestamp, long toTimestamp, long centerTimestamp) {
+        long fromDay = getDay(fromTimestamp);
+        long toDay = getDay(toTimestamp);
+        int capacity = texts.length;
+        if (toDay - fromDay + 1 > capacity) {
+            fromDay = Math.max(fromDay, getDay(centerTimestamp) - capacity / 2);
+            toDay = Math.min(toDay, fromDay + capacity - 1);
+        }
+        for (long day = fromDay; day <= toDay; day++) {
+            int slot = (int) (day & slotMask);
+            if (texts[slot] != null && days[slot] == day) continue;
+
+            // local noon, so daylight saving time shifts don't move it to another day
+            long timestamp = day * DAY_MILLIS + DAY_MILLIS / 2;
+            format(timestamp - timeZone.getOffset(timestamp), day, slot);
+        }
+    }
+
+    private String format(long timestamp, long day, int slot) {
+        date.setTime(timestamp);
+        String text = format.format(date);
+        days[slot] = day;
+        texts[slot] = text;
+        return text;
+    }
+
+    private long getDay(long timestamp) {
+        long localTime = timestamp + timeZone.getOffset(timestamp);
+        return localTime >= 0 ? localTime / DAY_MILLIS : (localTime + 1) / DAY_MILLIS - 1;
+    }
+
+    /**
+     * Texts of one date with two-digit day in every month, enough to find the widest text of the format
+     */
+    String[] formatMonthSamples() {
+        Calendar calendar = Calendar.getInstance(timeZone, Locale.US);
+        calendar.clear();
+        String[] samples = new String[12];
+        for (int month = 0; month < samples.length; month++) {
+            calendar.set(2000, Calendar.JANUARY + month, 28);
+            samples[month] = format.format(calendar.getTime());
+        }
+        return samples;
+    }
+
+}
@@ -1,71 +1,172 @@
 package by.anegin.tgcontest.core.ui.model;
 
-import android.graphics.Matrix;
-
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Locale;
 
 import by.anegin.tgcontest.data.model.Chart;
 import by.anegin.tgcontest.data.model.Column;
-import by.anegin.tgcontest.core.ui.objects.Graph;
+import by.anegin.tgcontest.core.ui.objects.GraphGeometry;
+import by.anegin.tgcontest.core.ui.objects.PointsPyramid;
+import by.anegin.tgcontest.core.utils.ArithmeticSeries;
+import by.anegin.tgcontest.core.utils.CompressedSeries;
+import by.anegin.tgcontest.core.utils.LongSeries;
+import by.anegin.tgcontest.core.utils.RangeMaxIndex;
 
 public class UiChart {
 
-    public final long[] xValues;
-    public final List<UiDate> dates;
-    public final List<Graph> graphs;
+    private static final int DATE_TEXTS_CACHE_BITS = 7;
+
+    // ascending, points of a chart with unsorted x are reordered when UiChart is built
+    public final LongSeries xValues;
+    public final List<GraphGeometry> graphs;
     public final long width;
     public final long minX;
 
+    // texts of dates are formatted on first request from UI thread, only recently used days are kept
+    private final DateTextCache dateTexts = new DateTextCache("MMM dd", DATE_TEXTS_CACHE_BITS);
+    private final DateTextCache popupDateTexts = new DateTextCache("EEE, MMM dd", DATE_TEXTS_CACHE_BITS);
+
+    // points which popup titles were prepared for the last time
+    private int preparedFirst = -1;
+    private int preparedLast = -1;
+
     public UiChart(Chart chart) {
-        if (chart.x.values.length == 0 || chart.lines.isEmpty()) {
-            xValues = new long[0];
-            dates = new ArrayList<>();
+        if (chart.x.size == 0 || chart.lines.isEmpty()) {
+            xValues = CompressedSeries.encodeTimestamps(new long[0]);
             graphs = new ArrayList<>();
             width = 0;
             minX = 0;
             return;
         }
 
-        long[] minMaxX = findMinMax(chart.x.values);
+        // points are looked up by binary search on x, so they must be sorted
+        long[] sourceX = chart.x.toArray();
+        List<Column.Line> lines = chart.lines;
+        int[] order = findSortedOrder(sourceX);
+        if (order != null) {
+            sourceX = reorder(sourceX, order);
+            lines = new ArrayList<>(chart.lines.size());
+            for (Column.Line line : chart.lines) {
+                lines.add(new Column.Line(line.id, line.name, line.color, reorder(line.values, order)));
+            }
+        }
+
+        long[] minMaxX = findMinMax(sourceX);
         minX = minMaxX[0];
 
-        xValues = new long[chart.x.values.length];
-        for (int i = 0; i < xValues.length; i++) {
-            xValues[i] = chart.x.values[i] - minMaxX[0];
+        long[] shiftedX = new long[sourceX.length];
+        for (int i = 0; i < shiftedX.length; i++) {
+            shiftedX[i] = sourceX[i] - minMaxX[0];
         }
+        // evenly spaced x values are not stored, they are calculated from index
+        LongSeries evenX = ArithmeticSeries.detect(shiftedX);
+        xValues = evenX != null ? evenX : CompressedSeries.encodeTimestamps(shiftedX);
+
+        // decoded values are used only to build levels of details, only compressed series are kept
+        float[] floatX = toFloats(shiftedX);
 
-        long maxY = Long.MIN_VALUE;
-        for (Column.Line line : chart.lines) {
-            int count = Math.min(chart.x.values.length, line.values.length);
-            for (int i = 0; i < count; i++) {
-                if (line.values[i] > maxY) maxY = line.values[i];
+        graphs = new ArrayList<>();
+        for (Column.Line line : lines) {
+            CompressedSeries yValues = CompressedSeries.encodeValues(line.values);
+            PointsPyramid pyramid = new PointsPyramid(xValues, yValues, floatX, toFloats(line.values));
+            if (pyramid.getPointsCount(0) > 0) {
+                RangeMaxIndex maxIndex = new RangeMaxIndex(xValues, yValues);
+                graphs.add(new GraphGeometry(line.id, line.name, yValues, line.color, pyramid, maxIndex));
             }
         }
 
-        Matrix matrix = new Matrix();
-        matrix.setTranslate(-minMaxX[0], 0);
+        width = minMaxX[1] - minMaxX[0];
+    }
 
-        graphs = new ArrayList<>();
-        for (Column.Line line : chart.lines) {
-            float[] points = lineToPoints(chart.x.values, line.values);
-            if (points.length > 0) {
-                matrix.mapPoints(points);
-                graphs.add(new Graph(line.id, line.name, line.values, points, line.color));
-            }
+    /**
+     * Text of the date label for the point, points of one day share the same instance while it is cached
+     */
+    public String getDateText(int index) {
+        return dateTexts.get(xValues.get(index) + minX);
+    }
+
+    /**
+     * Title of the popup for the point, points of one day share the same instance while it is cached
+     */
+    public String getPopupDate(int index) {
+        return popupDateTexts.get(xValues.get(index) + minX);
+    }
+
+    /**
+     * Formats popup titles of days of points [first, last] which are not cached, so selecting these points
+     * doesn't allocate. If the points span more days than the cache holds, days around index are formatted.
+     * Must be called from UI thread.
+     */
+    public void preparePopupDates(int first, int last, int index) {
+        if (first > last || (first == preparedFirst && last == preparedLast)) return;
+        preparedFirst = first;
+        preparedLast = last;
+        popupDateTexts.prepare(xValues.get(first) + minX, xValues.get(last) + minX, xValues.get(index) + minX);
+    }
+
+    /**
+     * Approximate memory used by the chart: x values shared by lines and geometry of all lines
+     */
+    public long getByteCount() {
+        long byteCount = xValues.getByteCount();
+        for (GraphGeometry graph : graphs) {
+            byteCount += graph.getByteCount();
+        }
+        return byteCount;
+    }
+
+    /**
+     * Date label texts which are enough to measure the widest label
+     */
+    public String[] getDateTextSamples() {
+        return dateTexts.formatMonthSamples();
+    }
+
+    /**
+     * Index of the value nearest to x in ascending values, the first one of equally near values
+     */
+    public static int findNearestIndex(LongSeries values, float x) {
+        // first value not less than x
+        int lo = values.lowerBound(x);
+        if (lo == values.size()) return values.size() - 1;
+        if (lo > 0 && x - values.get(lo - 1) <= values.get(lo) - x) return lo - 1;
+        return lo;
+    }
+
+    /**
+     * Order of indices which sorts values ascending, or null if values are already sorted
+     */
+    private static int[] findSortedOrder(long[] values) {
+        boolean sorted = true;
+        for (int i = 1; i < values.length && sorted; i++) {
+            sorted = values[i - 1] <= values[i];
         }
+        if (sorted) return null;
 
-        SimpleDateFormat sdf = new SimpleDateFormat("MMM dd", Locale.US);
-        dates = new ArrayList<>(chart.x.values.length);
-        for (long xv : chart.x.values) {
-            String dateString = sdf.format(new Date(xv));
-            dates.add(new UiDate(xv - minMaxX[0], dateString));
+        Integer[] boxedOrder = new Integer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            boxedOrder[i] = i;
         }
+        // stable, so points with equal x keep their order
+        Arrays.sort(boxedOrder, (i1, i2) -> values[i1] < values[i2] ? -1 : (values[i1] == values[i2] ? 0 : 1));
 
-        width = minMaxX[1] - minMaxX[0];
+        int[] order = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            order[i] = boxedOrder[i];
+        }
+        return order;
+    }
+
+    /**
+     * Values in given order, missing values of a shorter column are zeros
+     */
+    private static long[] reorder(long[] values, int[] order) {
+        long[] reordered = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            if (order[i] < values.length) reordered[i] = values[order[i]];
+        }
+        return reordered;
     }
 
     private long[] findMinMax(long[] values) {
@@ -77,25 +178,12 @@ public class UiChart {
         return minMax;
     }
 
-    private float[] lineToPoints(long[] x, long[] y) {
-        int count = Math.min(x.length, y.length);
-        if (count < 2) return new float[]{};
-
-        float[] points = new float[4 * (count - 1)];
-        points[0] = x[0];
-        points[1] = y[0];
-        int j = 2;
-        for (int i = 1; i < count - 1; i++) {
-            points[j] = x[i];
-            points[j + 1] = y[i];
-            points[j + 2] = points[j];
-            points[j + 3] = points[j + 1];
-            j += 4;
+    private float[] toFloats(long[] values) {
+        float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            floats[i] = values[i];
         }
-        points[j] = x[count - 1];
-        points[j + 1] = y[count - 1];
-
-        return points;
+        return floats;
     }
 
 }
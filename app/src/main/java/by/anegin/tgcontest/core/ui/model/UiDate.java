@@ -1,13 +0,0 @@
-package by.anegin.tgcontest.core.ui.model;
-
-public class UiDate {
-
-    public final long x;
-    public final String text;
-
-    UiDate(long x, String text) {
-        this.x = x;
-        this.text = text;
-    }
-
-}
@@ -0,0 +1,217 @@
+package by.anegin.tgcontest.core.ui.objects;
+
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.text.TextPaint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import by.anegin.tgcontest.core.ui.model.ChartFrame;
+
+/**
+ * Draws {@link ChartFrame}s, keeping transformed graphs between frames.
+ * <p>
+ * Not thread safe, every thread drawing frames owns its renderer.
+ */
+public class ChartRenderer {
+
+    private final Paint gridLinePaint = new Paint();
+    private final TextPaint textPaint = new TextPaint();
+
+    private final float gridLineWidth;
+    private final float graphStrokeWidth;
+
+    private final Popup popup;
+
+    private final Matrix graphMatrix = new Matrix();
+    private final PointsBufferPool pointsBufferPool = new PointsBufferPool();
+
+    // few graphs, so linear search by geometry identity is cheaper than hashing
+    private final List<RenderedGraph> graphs = new ArrayList<>();
+    private int frameNumber = 0;
+
+    // parameters of the last transformation
+    private float lastXOffs;
+    private float lastXScale;
+    private float lastYScale;
+    private float lastPointsPerPixel;
+    private int lastWidth;
+    private int lastHeight;
+
+    public ChartRenderer(float gridLineWidth, int gridLineColor, int textColor, float textSize, float graphStrokeWidth, Popup popup) {
+        this.gridLineWidth = gridLineWidth;
+        this.graphStrokeWidth = graphStrokeWidth;
+        this.popup = popup;
+
+        gridLinePaint.setStyle(Paint.Style.STROKE);
+        gridLinePaint.setColor(gridLineColor);
+
+        textPaint.setTextSize(textSize);
+        textPaint.setColor(textColor);
+    }
+
+    /**
+     * Height of date labels drawn below the chart
+     */
+    public float getDateLabelsHeight() {
+        return getDateLabelsBaseline() + textPaint.descent();
+    }
+
+    private float getDateLabelsBaseline() {
+        return 1.2f * (-textPaint.ascent() + textPaint.descent());
+    }
+
+    public void draw(Canvas canvas, ChartFrame frame) {
+        int width = frame.width;
+        int height = frame.height;
+
+        // horizontal grid lines
+        gridLinePaint.setAlpha(255);
+        gridLinePaint.setStrokeWidth(gridLineWidth * 2f);
+        canvas.drawLine(0f, height, width, height, gridLinePaint);
+
+        if (frame.xScale == 0f || frame.yScale == 0f) {
+            releaseGraphs();
+            return;
+        }
+
+        canvas.save();
+        canvas.translate(-frame.xOffs, 0f);
+
+        // selected data (vertical line)
+        Popup.Data popupData = frame.popupData;
+        if (popupData != null) {
+            float x = popupData.chartX * frame.xScale;
+            canvas.drawLine(x, 0, x, height, gridLinePaint);
+        }
+
+        // date labels
+        float dateLabelsY = height + getDateLabelsBaseline();
+        for (int i = 0; i < frame.labelsCount; i++) {
+            textPaint.setAlpha((int) (frame.labelAlphas[i] * 255));
+            canvas.drawText(frame.labelTexts[i], frame.labelXs[i], dateLabelsY, textPaint);
+        }
+
+        canvas.restore();
+
+        // y grid lines
+        gridLinePaint.setStrokeWidth(gridLineWidth);
+        for (int i = 0; i < frame.gridLinesCount; i++) {
+            if (frame.gridAlphas[i] == 0f) continue;
+            gridLinePaint.setAlpha((int) (255 * frame.gridAlphas[i]));
+            float y = height - frame.gridLevels[i] * frame.yScale;
+            canvas.drawLine(0f, y, width, y, gridLinePaint);
+        }
+
+        // charts
+        updateGraphs(frame);
+        canvas.save();
+        canvas.clipRect(0f, 0f, width, height);
+        for (int i = 0; i < frame.graphsCount; i++) {
+            Graph graph = findGraph(frame.graphs[i]).graph;
+            graph.alpha = frame.graphAlphas[i];
+            graph.draw(canvas);
+        }
+        canvas.restore();
+
+        // y grid labels
+        float zeroAlpha = 0f;
+        for (int i = 0; i < frame.gridLinesCount; i++) {
+            if (frame.gridAlphas[i] == 0f) continue;
+            textPaint.setAlpha((int) (255 * frame.gridAlphas[i]));
+            float y = height - frame.gridLevels[i] * frame.yScale;
+            canvas.drawText(frame.gridTitles[i], 0f, y - textPaint.descent(), textPaint);
+            if (frame.gridAlphas[i] > zeroAlpha) zeroAlpha = frame.gridAlphas[i];
+        }
+        if (zeroAlpha > 0f) {
+            textPaint.setAlpha((int) (255 * zeroAlpha));
+            canvas.drawText("0", 0f, height - textPaint.descent(), textPaint);
+        }
+
+        // popup
+        if (popupData != null) {
+            float x = popupData.chartX * frame.xScale;
+            popup.drawPoints(canvas, popupData, frame.xOffs, x, frame.yScale, height);
+            popup.drawPopup(canvas, popupData, frame.xOffs, x, frame.contentWidth);
+        }
+    }
+
+    /**
+     * Returns all transformed points buffers to the pool
+     */
+    public void releaseGraphs() {
+        for (int i = 0; i < graphs.size(); i++) {
+            graphs.get(i).graph.release();
+        }
+        graphs.clear();
+    }
+
+    private void updateGraphs(ChartFrame frame) {
+        frameNumber++;
+
+        boolean transformChanged = frame.xOffs != lastXOffs || frame.xScale != lastXScale
+                || frame.yScale != lastYScale || frame.pointsPerPixel != lastPointsPerPixel
+                || frame.width != lastWidth || frame.height != lastHeight;
+        if (transformChanged) {
+            lastXOffs = frame.xOffs;
+            lastXScale = frame.xScale;
+            lastYScale = frame.yScale;
+            lastPointsPerPixel = frame.pointsPerPixel;
+            lastWidth = frame.width;
+            lastHeight = frame.height;
+
+            graphMatrix.reset();
+            graphMatrix.setTranslate(-frame.xOffs, frame.height);
+            graphMatrix.preScale(frame.xScale, -frame.yScale);
+        }
+
+        float visibleStartX = frame.xOffs / frame.xScale;
+        float visibleEndX = (frame.xOffs + frame.width) / frame.xScale;
+        for (int i = 0; i < frame.graphsCount; i++) {
+            GraphGeometry geometry = frame.graphs[i];
+            RenderedGraph renderedGraph = findGraph(geometry);
+            boolean isNew = renderedGraph == null;
+            if (isNew) {
+                renderedGraph = new RenderedGraph(new Graph(geometry, graphStrokeWidth, pointsBufferPool));
+                graphs.add(renderedGraph);
+            }
+            renderedGraph.frameNumber = frameNumber;
+            if (isNew || transformChanged) {
+                Graph graph = renderedGraph.graph;
+                graph.selectLevel(frame.pointsPerPixel);
+                graph.setVisibleRange(visibleStartX, visibleEndX);
+                graph.transform(graphMatrix);
+            }
+        }
+
+        // graphs which are not in the frame anymore (hidden or from previous chart)
+        for (int i = graphs.size() - 1; i >= 0; i--) {
+            RenderedGraph renderedGraph = graphs.get(i);
+            if (renderedGraph.frameNumber != frameNumber) {
+                renderedGraph.graph.release();
+                graphs.remove(i);
+            }
+        }
+    }
+
+    private RenderedGraph findGraph(GraphGeometry geometry) {
+        for (int i = 0; i < graphs.size(); i++) {
+            RenderedGraph renderedGraph = graphs.get(i);
+            if (renderedGraph.graph.geometry == geometry) return renderedGraph;
+        }
+        return null;
+    }
+
+    private static class RenderedGraph {
+
+        private final Graph graph;
+        private int frameNumber;
+
+        private RenderedGraph(Graph graph) {
+            this.graph = graph;
+        }
+    }
+
+}
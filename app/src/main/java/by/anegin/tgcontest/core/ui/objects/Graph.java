@@ -4,74 +4,158 @@ import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 
-public class Graph {
+import by.anegin.tgcontest.core.utils.CompressedSeries;
 
-    public static final int STATE_VISIBLE = 1;
-    public static final int STATE_HIDDEN = 2;
-    public static final int STATE_SHOWING = 3;
-    public static final int STATE_HIDING = 4;
+/**
+ * Line with transformed points buffers, drawn by the view or renderer which owns it
+ */
+public class Graph extends GraphState {
 
-    public final String id;
-    public final String name;
+    private static final int DECIMATION_CHUNK_SIZE = 4 * CompressedSeries.BLOCK_SIZE;
 
-    public final long[] yValues;
+    private final PointsPyramid pyramid;
 
-    public final int color;
+    private final PointsBufferPool bufferPool;
+    private float[] transformedPoints;
+    private int transformedCount = 0;
+    private int level = 0;
 
-    private final float[] points;     // x0, y0, x1, y1, x1, y1, x2, y2, ...
-    private final float[] transformedPoints;
+    // M4 decimation of all points, drawn instead of the pyramid if set
+    private float[] decimatedPoints;
+    private int decimatedCount = 0;
+    private float decimatedMaxY = 0f;
 
-    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+    // visible range of x values, only segments intersecting it are transformed and drawn
+    private float visibleStartX = Float.NEGATIVE_INFINITY;
+    private float visibleEndX = Float.POSITIVE_INFINITY;
 
-    public volatile int state = STATE_VISIBLE;
-    public volatile float alpha = 1f;
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
 
-    // copy constructor
-    public Graph(Graph graph, float strokeWidth) {
-        this(graph.id, graph.name, graph.yValues, graph.points, graph.paint.getColor());
+    public Graph(GraphGeometry geometry, float strokeWidth, PointsBufferPool bufferPool) {
+        super(geometry);
+        this.pyramid = geometry.pyramid;
+        this.bufferPool = bufferPool;
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setColor(color);
         paint.setStrokeWidth(strokeWidth);
         //paint.setStrokeCap(Paint.Cap.ROUND);    // increases draw time up to 1.5-2 times
     }
 
-    public Graph(String id, String name, long[] yValues, float[] points, final int color) {
-        this.id = id;
-        this.name = name;
-        this.yValues = yValues;
-        this.color = color;
-        this.points = points;
-        this.transformedPoints = new float[points.length];
-        System.arraycopy(points, 0, transformedPoints, 0, points.length);
-        paint.setStyle(Paint.Style.STROKE);
-        paint.setColor(color);
+    /**
+     * Returns transformed points buffer to the pool, graph must not be used after that
+     */
+    public void release() {
+        bufferPool.recycle(transformedPoints);
+        transformedPoints = null;
+        transformedCount = 0;
+        bufferPool.recycle(decimatedPoints);
+        decimatedPoints = null;
+        decimatedCount = 0;
     }
 
     public void draw(Canvas canvas) {
-        if (transformedPoints.length > 3) {
+        if (transformedCount > 3) {
             paint.setAlpha((int) (alpha * 255));
-            canvas.drawLines(transformedPoints, paint);
+            canvas.drawLines(transformedPoints, 0, transformedCount, paint);
+        }
+    }
+
+    /**
+     * Selects level of details to be used on next {@link #transform(Matrix)}
+     */
+    public void selectLevel(float pointsPerPixel) {
+        level = pyramid.findLevel(pointsPerPixel);
+    }
+
+    /**
+     * Replaces levels of details with M4 decimation of all points into pixel columns,
+     * for views which always show the whole line at the same x scale.
+     * Visible range is ignored after that.
+     *
+     * @param columnWidth width of one pixel column in units of x
+     */
+    public void decimate(float startX, float columnWidth, int columnsCount) {
+        int pointsCount = pyramid.getPointsCount(0);
+        int chunksCount = (pointsCount + DECIMATION_CHUNK_SIZE - 1) / DECIMATION_CHUNK_SIZE;
+        // column split by chunks is decimated as two columns
+        int size = 8 * (columnsCount + chunksCount);
+        if (decimatedPoints == null || decimatedPoints.length < size) {
+            bufferPool.recycle(decimatedPoints);
+            decimatedPoints = bufferPool.obtain(size);
+        }
+
+        // points are decoded by chunks, so all of them are never decoded at once
+        float[] chunk = bufferPool.obtain(2 * DECIMATION_CHUNK_SIZE);
+        decimatedCount = 0;
+        for (int first = 0; first < pointsCount; first += DECIMATION_CHUNK_SIZE) {
+            int count = Math.min(DECIMATION_CHUNK_SIZE, pointsCount - first);
+            pyramid.copyPoints(0, first, count, chunk);
+            decimatedCount = PointsDecimator.decimate(chunk, count, startX, columnWidth, columnsCount,
+                    decimatedPoints, decimatedCount);
+        }
+        bufferPool.recycle(chunk);
+
+        float maxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < decimatedCount; i++) {
+            maxY = Math.max(maxY, decimatedPoints[2 * i + 1]);
         }
+        decimatedMaxY = maxY;
+    }
+
+    public void setVisibleRange(float startX, float endX) {
+        visibleStartX = startX;
+        visibleEndX = endX;
     }
 
     public void transform(Matrix matrix) {
-        matrix.mapPoints(transformedPoints, points);
+        if (decimatedPoints != null) {
+            transformDecimated(matrix);
+            return;
+        }
+        if (pyramid.getPointsCount(level) < 2) {
+            transformedCount = 0;
+            return;
+        }
+        int firstPoint = pyramid.findFirstVisiblePoint(level, visibleStartX);
+        int lastPoint = pyramid.findLastVisiblePoint(level, visibleEndX);
+        if (lastPoint <= firstPoint) {
+            transformedCount = 0;
+            return;
+        }
+        int pointsCount = lastPoint - firstPoint + 1;
+        int segmentsSize = 4 * (pointsCount - 1);
+        if (transformedPoints == null || transformedPoints.length < segmentsSize) {
+            bufferPool.recycle(transformedPoints);
+            transformedPoints = bufferPool.obtain(segmentsSize);
+        }
+        // map only visible points, then expand them into segments for drawLines()
+        pyramid.copyPoints(level, firstPoint, pointsCount, transformedPoints);
+        matrix.mapPoints(transformedPoints, 0, transformedPoints, 0, pointsCount);
+        transformedCount = PointsPyramid.expandToSegments(transformedPoints, pointsCount);
     }
 
-    public float findMaxYInRange(float startX, float endX) {
-        if (state == STATE_HIDDEN || state == STATE_HIDING) return 0f;
-        float maxY = 0f;
-        int i = 0;
-        while (i + 3 < points.length) {
-            if (!(points[i] < startX && points[i + 2] < startX) && !(points[i] > endX && points[i + 2] > endX)) {
-                if (points[i + 1] > maxY) maxY = points[i + 1];
-                if (points[i + 3] > maxY) maxY = points[i + 3];
-            }
-            i += 4;
+    private void transformDecimated(Matrix matrix) {
+        int pointsCount = decimatedCount;
+        if (pointsCount < 2) {
+            transformedCount = 0;
+            return;
+        }
+        int segmentsSize = 4 * (pointsCount - 1);
+        if (transformedPoints == null || transformedPoints.length < segmentsSize) {
+            bufferPool.recycle(transformedPoints);
+            transformedPoints = bufferPool.obtain(segmentsSize);
         }
-        return maxY;
+        matrix.mapPoints(transformedPoints, 0, decimatedPoints, 0, pointsCount);
+        transformedCount = PointsPyramid.expandToSegments(transformedPoints, pointsCount);
     }
 
-    public boolean isVisible() {
-        return state == STATE_VISIBLE || state == STATE_SHOWING;
+    /**
+     * Max y of the whole line, taken from decimated points if they are set
+     */
+    public float findMaxY() {
+        if (state == STATE_HIDDEN || state == STATE_HIDING) return 0f;
+        if (decimatedPoints != null) return Math.max(0f, decimatedMaxY);
+        return Math.max(0f, geometry.maxIndex.findMaxInRange(Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY));
     }
 
 }
\ No newline at end of file
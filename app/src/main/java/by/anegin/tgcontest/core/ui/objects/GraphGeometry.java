@@ -0,0 +1,92 @@
+package by.anegin.tgcontest.core.ui.objects;
+
+import java.util.Arrays;
+
+import by.anegin.tgcontest.core.utils.CompressedSeries;
+import by.anegin.tgcontest.core.utils.RangeMaxIndex;
+
+/**
+ * Immutable geometry of a line, shared by all views drawing it.
+ * <p>
+ * Only texts of values are formatted lazily, they must be accessed from UI thread only.
+ */
+public class GraphGeometry {
+
+    // texts are formatted for all visible points, but not more than this around the selected one
+    private static final int MAX_VALUE_TEXTS = 4096;
+
+    public final String id;
+    public final String name;
+    public final CompressedSeries yValues;
+    public final int color;
+
+    public final PointsPyramid pyramid;
+    public final RangeMaxIndex maxIndex;
+
+    // texts of a window of points, valueTexts[i] is the text of point valueTextsStart + i
+    private String[] valueTexts;
+    private int valueTextsStart;
+    private int valueTextsCount;
+
+    public GraphGeometry(String id, String name, CompressedSeries yValues, int color, PointsPyramid pyramid, RangeMaxIndex maxIndex) {
+        this.id = id;
+        this.name = name;
+        this.yValues = yValues;
+        this.color = color;
+        this.pyramid = pyramid;
+        this.maxIndex = maxIndex;
+    }
+
+    /**
+     * Approximate memory used by values and their indexes, lazily formatted texts are not counted
+     */
+    public long getByteCount() {
+        return yValues.getByteCount() + pyramid.getByteCount() + maxIndex.getByteCount();
+    }
+
+    /**
+     * Text of the value of the point. When the point is out of the formatted window, texts of all points
+     * from first to last are formatted at once, so selecting other visible points doesn't allocate.
+     */
+    public String getValueText(int index, int first, int last) {
+        if (index < valueTextsStart || index >= valueTextsStart + valueTextsCount) {
+            formatValueTexts(index, first, last);
+        }
+        return valueTexts[index - valueTextsStart];
+    }
+
+    private void formatValueTexts(int index, int first, int last) {
+        first = Math.max(0, Math.min(first, index));
+        last = Math.min(yValues.size() - 1, Math.max(last, index));
+        if (last - first + 1 > MAX_VALUE_TEXTS) {
+            first = Math.max(first, index - MAX_VALUE_TEXTS / 2);
+            last = Math.min(last, first + MAX_VALUE_TEXTS - 1);
+        }
+        int count = last - first + 1;
+
+        String[] texts = valueTexts != null && valueTexts.length >= count ? valueTexts : new String[count];
+
+        // texts of points which stay in the window are kept
+        int keptFrom = Math.max(first, valueTextsStart);
+        int keptTo = Math.min(last + 1, valueTextsStart + valueTextsCount);
+        if (keptFrom < keptTo) {
+            System.arraycopy(valueTexts, keptFrom - valueTextsStart, texts, keptFrom - first, keptTo - keptFrom);
+        } else {
+            keptFrom = keptTo = first;
+        }
+
+        long[] values = new long[count];
+        yValues.decode(first, count, values, 0);
+        for (int i = first; i <= last; i++) {
+            if (i < keptFrom || i >= keptTo) {
+                texts[i - first] = String.valueOf(values[i - first]);
+            }
+        }
+        Arrays.fill(texts, count, texts.length, null);
+
+        valueTexts = texts;
+        valueTextsStart = first;
+        valueTextsCount = count;
+    }
+
+}
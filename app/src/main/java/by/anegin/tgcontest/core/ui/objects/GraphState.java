@@ -0,0 +1,45 @@
+package by.anegin.tgcontest.core.ui.objects;
+
+import by.anegin.tgcontest.core.utils.CompressedSeries;
+
+/**
+ * Line of a chart with its visibility state and alpha, without buffers needed to draw it.
+ * Views which draw the line themselves use {@link Graph}.
+ */
+public class GraphState {
+
+    public static final int STATE_VISIBLE = 1;
+    public static final int STATE_HIDDEN = 2;
+    public static final int STATE_SHOWING = 3;
+    public static final int STATE_HIDING = 4;
+
+    public final String id;
+    public final String name;
+
+    public final CompressedSeries yValues;
+
+    public final int color;
+
+    public final GraphGeometry geometry;    // shared between views
+
+    public volatile int state = STATE_VISIBLE;
+    public volatile float alpha = 1f;
+
+    public GraphState(GraphGeometry geometry) {
+        this.id = geometry.id;
+        this.name = geometry.name;
+        this.yValues = geometry.yValues;
+        this.color = geometry.color;
+        this.geometry = geometry;
+    }
+
+    public float findMaxYInRange(float startX, float endX) {
+        if (state == STATE_HIDDEN || state == STATE_HIDING) return 0f;
+        return Math.max(0f, geometry.maxIndex.findMaxInRange(startX, endX));
+    }
+
+    public boolean isVisible() {
+        return state == STATE_VISIBLE || state == STATE_SHOWING;
+    }
+
+}
@@ -1,31 +1,39 @@
 package by.anegin.tgcontest.core.ui.objects;
 
-import android.animation.ValueAnimator;
-import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.text.TextPaint;
-import android.view.animation.AccelerateInterpolator;
-
 import java.text.DecimalFormat;
 
-import by.anegin.tgcontest.core.ui.view.ChartView;
+import by.anegin.tgcontest.core.ui.AnimationClock;
 
-public class Grid {
+/**
+ * Horizontal grid lines with titles for one y scale target.
+ * <p>
+ * Grids are reused: {@link #set(float, float, float)} prepares grid for a new target,
+ * titles of levels are cached between grids. Must be used from UI thread only.
+ */
+public class Grid implements AnimationClock.TweenListener {
 
     public interface OnFadedOutListener {
         void onFadedOut(Grid grid);
     }
 
     private static final float GAPS_COUNT = 5.55f;
-    private static final int LINES_COUNT = (int) Math.floor(GAPS_COUNT);
+    public static final int LINES_COUNT = (int) Math.floor(GAPS_COUNT);
+
+    private static final int FADE_OUT_DURATION = 300;
+
+    private static final DecimalFormat decimalFormat = new DecimalFormat();
 
-    private final DecimalFormat decimalFormat = new DecimalFormat();
+    // titles cache keyed by level value, slot is selected by hash of the level, colliding entry is overwritten
+    private static final int TITLES_CACHE_BITS = 6;
+    private static final int TITLES_CACHE_SIZE = 1 << TITLES_CACHE_BITS;
+    private static final float[] cachedLevels = new float[TITLES_CACHE_SIZE];
+    private static final String[] cachedTitles = new String[TITLES_CACHE_SIZE];
 
-    private final Paint linePaint = new Paint();
-    private final TextPaint textPaint = new TextPaint();
+    private final AnimationClock animationClock;
+    private final OnFadedOutListener onFadedOutListener;
 
-    private final float fromYScale;
-    public final float targetYScale;
+    private float fromYScale;
+    private float targetYScale;
 
     private final float[] levels = new float[LINES_COUNT];
     private final String[] titles = new String[LINES_COUNT];
@@ -34,68 +42,65 @@ public class Grid {
 
     private boolean hiding = false;
 
-    public Grid(float fromYScale, float targetYScale, float maxY, int lineColor, float lineWidth, int textColor, float textSize) {
+    private final int fadeOutTween;
+
+    public Grid(AnimationClock animationClock, OnFadedOutListener onFadedOutListener) {
+        this.animationClock = animationClock;
+        this.onFadedOutListener = onFadedOutListener;
+        fadeOutTween = animationClock.newTween(this);
+    }
+
+    public Grid set(float fromYScale, float targetYScale, float maxY) {
+        animationClock.cancel(fadeOutTween);
         this.fromYScale = fromYScale;
         this.targetYScale = targetYScale;
+        this.alpha = 0f;
+        this.hiding = false;
 
         float gapHeight = maxY / GAPS_COUNT;
 
         float y = gapHeight;
         for (int i = 0; i < LINES_COUNT; i++) {
             levels[i] = y;
-            titles[i] = makeLevelTitle(y);
+            titles[i] = getLevelTitle(y);
             y += gapHeight;
         }
+        return this;
+    }
 
-        linePaint.setColor(lineColor);
-        linePaint.setStyle(Paint.Style.STROKE);
-        linePaint.setStrokeWidth(lineWidth);
-
-        textPaint.setColor(textColor);
-        textPaint.setTextSize(textSize);
-
-        decimalFormat.setMinimumIntegerDigits(0);
+    public float getTargetYScale() {
+        return targetYScale;
     }
 
-    public void fadeOut(ChartView chartView, OnFadedOutListener listener) {
+    public void fadeOut() {
         if (hiding) return;
         hiding = true;
-        ValueAnimator anim = ValueAnimator.ofFloat(alpha, 0f);
-        anim.setInterpolator(new AccelerateInterpolator());
-        anim.setDuration((long) (300 * alpha));
-        anim.addUpdateListener(animation -> {
-            alpha = (float) animation.getAnimatedValue();
-            chartView.invalidateOnAnimation();
-            if (alpha == 0f) {
-                listener.onFadedOut(this);
-            }
-        });
-        anim.start();
+        animationClock.start(fadeOutTween, alpha, 0f, (long) (FADE_OUT_DURATION * alpha), AnimationClock.INTERPOLATOR_ACCELERATE);
     }
 
-    public void drawLines(Canvas canvas, float yScale) {
-        updateAlpha(yScale);
-        if (alpha == 0f) return;
-
-        linePaint.setAlpha((int) (255 * alpha));
-
-        for (int i = 0; i < LINES_COUNT; i++) {
-            float y = canvas.getHeight() - levels[i] * yScale;
-            canvas.drawLine(0f, y, canvas.getWidth(), y, linePaint);
+    @Override
+    public void onTweenUpdate(int tween, float value, boolean finished) {
+        if (!hiding) return;
+        alpha = value;
+        if (finished) {
+            onFadedOutListener.onFadedOut(this);
         }
     }
 
-    public void drawLabels(Canvas canvas, float yScale) {
-        updateAlpha(yScale);
-        if (alpha == 0f) return;
+    public float getLevel(int line) {
+        return levels[line];
+    }
 
-        textPaint.setAlpha((int) (255 * alpha));
+    public String getTitle(int line) {
+        return titles[line];
+    }
 
-        for (int i = 0; i < LINES_COUNT; i++) {
-            float y = canvas.getHeight() - levels[i] * yScale;
-            canvas.drawText(titles[i], 0f, y - textPaint.descent(), textPaint);
-        }
-        canvas.drawText("0", 0f, canvas.getHeight() - textPaint.descent(), textPaint);
+    /**
+     * Alpha of the grid for current y scale, changes only while grid is fading in or out
+     */
+    public float getAlpha(float yScale) {
+        updateAlpha(yScale);
+        return alpha;
     }
 
     private void updateAlpha(float yScale) {
@@ -110,7 +115,18 @@ public class Grid {
         }
     }
 
-    private String makeLevelTitle(float level) {
+    private static String getLevelTitle(float level) {
+        int slot = (Float.floatToIntBits(level) * 0x9E3779B9) >>> (32 - TITLES_CACHE_BITS);
+        String title = cachedTitles[slot];
+        if (title == null || cachedLevels[slot] != level) {
+            title = makeLevelTitle(level);
+            cachedLevels[slot] = level;
+            cachedTitles[slot] = title;
+        }
+        return title;
+    }
+
+    private static String makeLevelTitle(float level) {
         float value;
         int maxFractionDigits;
         String suffix;
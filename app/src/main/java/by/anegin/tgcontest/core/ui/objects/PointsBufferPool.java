@@ -0,0 +1,47 @@
+package by.anegin.tgcontest.core.ui.objects;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-view pool of transformed points buffers, reused when chart is changed
+ */
+public class PointsBufferPool {
+
+    private static final int MAX_POOLED_BUFFERS = 16;
+
+    private final List<float[]> buffers = new ArrayList<>();
+
+    /**
+     * @return smallest pooled buffer which fits minSize floats, or new buffer of nearest power of two size
+     */
+    public float[] obtain(int minSize) {
+        int bestIndex = -1;
+        for (int i = 0; i < buffers.size(); i++) {
+            int length = buffers.get(i).length;
+            if (length >= minSize && (bestIndex == -1 || length < buffers.get(bestIndex).length)) {
+                bestIndex = i;
+            }
+        }
+        if (bestIndex != -1) {
+            return buffers.remove(bestIndex);
+        }
+        int size = Integer.highestOneBit(Math.max(minSize, 4) - 1) << 1;
+        return new float[size];
+    }
+
+    public void recycle(float[] buffer) {
+        if (buffer == null) return;
+        if (buffers.size() == MAX_POOLED_BUFFERS) {
+            // drop the smallest one
+            int smallestIndex = 0;
+            for (int i = 1; i < buffers.size(); i++) {
+                if (buffers.get(i).length < buffers.get(smallestIndex).length) smallestIndex = i;
+            }
+            if (buffers.get(smallestIndex).length >= buffer.length) return;
+            buffers.remove(smallestIndex);
+        }
+        buffers.add(buffer);
+    }
+
+}
@@ -0,0 +1,75 @@
+package by.anegin.tgcontest.core.ui.objects;
+
+/**
+ * M4 decimation of a line which is drawn in a fixed number of pixel columns.
+ * <p>
+ * Only the first, the last, the lowest and the highest points of every column are kept, in their original order.
+ * Line through them covers the same pixels as the line through all points, so it looks identical,
+ * but has at most 4 points per column regardless of the length of the line.
+ */
+public class PointsDecimator {
+
+    private PointsDecimator() {
+    }
+
+    /**
+     * @param points       x, y pairs sorted by x
+     * @param startX       x of the left edge of the first column
+     * @param columnWidth  width of one column in units of x
+     * @param columnsCount points outside of the columns are added to the first or the last one
+     * @param out          buffer for decimated x, y pairs, 8 * columnsCount floats are enough for all points of a line
+     * @param outCount     number of points which are already in out, decimated points are put after them
+     * @return number of points in out
+     */
+    public static int decimate(float[] points, int pointsCount, float startX, float columnWidth, int columnsCount,
+                               float[] out, int outCount) {
+        int column = -1;
+        int first = 0;
+        int last = 0;
+        int min = 0;
+        int max = 0;
+        for (int i = 0; i < pointsCount; i++) {
+            int c = (int) ((points[2 * i] - startX) / columnWidth);
+            if (c < 0) c = 0;
+            else if (c >= columnsCount) c = columnsCount - 1;
+
+            if (c != column) {
+                if (column != -1) {
+                    outCount = putColumn(points, first, min, max, last, out, outCount);
+                }
+                column = c;
+                first = i;
+                last = i;
+                min = i;
+                max = i;
+            } else {
+                last = i;
+                float y = points[2 * i + 1];
+                if (y < points[2 * min + 1]) min = i;
+                if (y > points[2 * max + 1]) max = i;
+            }
+        }
+        if (column != -1) {
+            outCount = putColumn(points, first, min, max, last, out, outCount);
+        }
+        return outCount;
+    }
+
+    private static int putColumn(float[] points, int first, int min, int max, int last, float[] out, int outCount) {
+        // first <= low <= high <= last, equal indices are put once
+        int low = Math.min(min, max);
+        int high = Math.max(min, max);
+        outCount = putPoint(points, first, out, outCount);
+        if (low > first) outCount = putPoint(points, low, out, outCount);
+        if (high > low) outCount = putPoint(points, high, out, outCount);
+        if (last > high) outCount = putPoint(points, last, out, outCount);
+        return outCount;
+    }
+
+    private static int putPoint(float[] points, int index, float[] out, int outCount) {
+        out[2 * outCount] = points[2 * index];
+        out[2 * outCount + 1] = points[2 * index + 1];
+        return outCount + 1;
+    }
+
+}
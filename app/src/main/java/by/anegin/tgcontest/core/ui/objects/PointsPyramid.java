@@ -0,0 +1,196 @@
+package by.anegin.tgcontest.core.ui.objects;
+
+import by.anegin.tgcontest.core.utils.CompressedSeries;
+import by.anegin.tgcontest.core.utils.LongSeries;
+
+/**
+ * Multi-resolution representation of a line, every level stores points as interleaved x, y pairs.
+ * <p>
+ * Level 0 contains all points, it is not stored but decoded from series on request.
+ * Every next level is built by min/max decimation with buckets of 4, 8, 16, ... source points,
+ * so it has about half the points of the previous one.
+ */
+public class PointsPyramid {
+
+    private static final int MIN_BUCKETS_COUNT = 2;
+
+    private final LongSeries xSeries;
+    private final CompressedSeries ySeries;
+    private final int count;
+
+    private final float[][] levels;     // x0, y0, x1, y1, x2, y2, ...; null for level 0
+    private final int[] bucketSizes;
+
+    /**
+     * @param x decoded values of xSeries, used only to build levels
+     * @param y decoded values of ySeries, used only to build levels
+     */
+    public PointsPyramid(LongSeries xSeries, CompressedSeries ySeries, float[] x, float[] y) {
+        this.xSeries = xSeries;
+        this.ySeries = ySeries;
+        int count = Math.min(x.length, y.length);
+        this.count = count;
+
+        int levelsCount = 1;
+        for (int bucketSize = 4; (count + bucketSize - 1) / bucketSize >= MIN_BUCKETS_COUNT; bucketSize *= 2) {
+            levelsCount++;
+        }
+        levels = new float[levelsCount][];
+        bucketSizes = new int[levelsCount];
+
+        bucketSizes[0] = 1;
+        if (levelsCount == 1) return;
+
+        int[] indices = new int[count];
+
+        // buckets of 2 points
+        int bucketsCount = (count + 1) / 2;
+        int[] minIndices = new int[bucketsCount];
+        int[] maxIndices = new int[bucketsCount];
+        for (int b = 0; b < bucketsCount; b++) {
+            int i0 = 2 * b;
+            int i1 = Math.min(i0 + 1, count - 1);
+            minIndices[b] = y[i1] < y[i0] ? i1 : i0;
+            maxIndices[b] = y[i1] > y[i0] ? i1 : i0;
+        }
+
+        for (int level = 1; level < levelsCount; level++) {
+            // merge pairs of buckets
+            int mergedCount = (bucketsCount + 1) / 2;
+            for (int b = 0; b < mergedCount; b++) {
+                int b0 = 2 * b;
+                int b1 = Math.min(b0 + 1, bucketsCount - 1);
+                minIndices[b] = y[minIndices[b1]] < y[minIndices[b0]] ? minIndices[b1] : minIndices[b0];
+                maxIndices[b] = y[maxIndices[b1]] > y[maxIndices[b0]] ? maxIndices[b1] : maxIndices[b0];
+            }
+            bucketsCount = mergedCount;
+
+            // min and max of every bucket in order of their indices
+            int pointsCount = 0;
+            for (int b = 0; b < bucketsCount; b++) {
+                int first = Math.min(minIndices[b], maxIndices[b]);
+                int second = Math.max(minIndices[b], maxIndices[b]);
+                indices[pointsCount++] = first;
+                if (second != first) indices[pointsCount++] = second;
+            }
+            levels[level] = toPoints(x, y, indices, pointsCount);
+            bucketSizes[level] = 2 << level;
+        }
+    }
+
+    public int getLevelsCount() {
+        return levels.length;
+    }
+
+    /**
+     * Copies points [first, first + pointsCount) of the level into out as x, y pairs
+     */
+    public void copyPoints(int level, int first, int pointsCount, float[] out) {
+        if (level == 0) {
+            xSeries.decodeFloats(first, pointsCount, out, 0, 2);
+            ySeries.decodeFloats(first, pointsCount, out, 1, 2);
+        } else {
+            System.arraycopy(levels[level], 2 * first, out, 0, 2 * pointsCount);
+        }
+    }
+
+    /**
+     * Most decimated level which buckets are not wider than one pixel
+     */
+    public int findLevel(float pointsPerPixel) {
+        int level = 0;
+        while (level + 1 < levels.length && bucketSizes[level + 1] <= pointsPerPixel) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Approximate memory used by decimated levels, series of level 0 are not counted as they are shared
+     */
+    public long getByteCount() {
+        long byteCount = 4L * bucketSizes.length;
+        for (int level = 1; level < levels.length; level++) {
+            byteCount += 4L * levels[level].length;
+        }
+        return byteCount;
+    }
+
+    public int getPointsCount(int level) {
+        if (level == 0) return count < 2 ? 0 : count;
+        return levels[level].length / 2;
+    }
+
+    /**
+     * Index of the last point of the level before x, or of the first point if there is no such point
+     */
+    public int findFirstVisiblePoint(int level, float x) {
+        if (level == 0) {
+            return Math.max(0, xSeries.lowerBound(x) - 1);
+        }
+        float[] points = levels[level];
+        int lo = 0;
+        int hi = points.length / 2;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (points[2 * mid] < x) lo = mid + 1;
+            else hi = mid;
+        }
+        return Math.max(0, lo - 1);
+    }
+
+    /**
+     * Index of the first point of the level after x, or of the last point if there is no such point
+     */
+    public int findLastVisiblePoint(int level, float x) {
+        if (level == 0) {
+            return Math.min(getPointsCount(0) - 1, xSeries.upperBound(x));
+        }
+        float[] points = levels[level];
+        int lo = 0;
+        int hi = points.length / 2;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (points[2 * mid] <= x) lo = mid + 1;
+            else hi = mid;
+        }
+        return Math.min(points.length / 2 - 1, lo);
+    }
+
+    /**
+     * Expands points [0, count) of buffer (x, y pairs) in place into segments for
+     * {@link android.graphics.Canvas#drawLines}: x0, y0, x1, y1, x1, y1, x2, y2, ...
+     *
+     * @param buffer buffer of at least 4 * (count - 1) floats
+     * @return number of floats of expanded segments
+     */
+    public static int expandToSegments(float[] buffer, int count) {
+        if (count < 2) return 0;
+
+        // going backwards, every point moves to higher position, so it never overwrites not yet moved point
+        int last = count - 1;
+        buffer[4 * last - 1] = buffer[2 * last + 1];
+        buffer[4 * last - 2] = buffer[2 * last];
+        for (int i = last - 1; i >= 1; i--) {
+            float px = buffer[2 * i];
+            float py = buffer[2 * i + 1];
+            buffer[4 * i] = px;
+            buffer[4 * i + 1] = py;
+            buffer[4 * i - 2] = px;
+            buffer[4 * i - 1] = py;
+        }
+        return 4 * last;
+    }
+
+    private static float[] toPoints(float[] x, float[] y, int[] indices, int count) {
+        if (count < 2) return new float[]{};
+
+        float[] points = new float[2 * count];
+        for (int i = 0; i < count; i++) {
+            points[2 * i] = x[indices[i]];
+            points[2 * i + 1] = y[indices[i]];
+        }
+        return points;
+    }
+
+}
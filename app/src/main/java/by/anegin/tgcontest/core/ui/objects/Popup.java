@@ -10,17 +10,24 @@ import android.os.Build;
 import android.text.TextPaint;
 import by.anegin.tgcontest.R;
 
-import java.util.List;
-
+/**
+ * Draws values of the selected point.
+ * <p>
+ * Texts come from per-index caches of {@link by.anegin.tgcontest.core.ui.model.UiChart} and {@link GraphGeometry},
+ * so their widths are cached by string identity and popup is drawn without measuring or allocating.
+ */
 public class Popup {
 
     private static final int POPUP_COLUMNS_COUNT = 2;
 
     private final TextPaint titleTextPaint = new TextPaint();
     private final TextPaint valuesTextPaint = new TextPaint();
+    private final TextPaint namesTextPaint = new TextPaint();
     private final Paint circlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
 
-    private final Rect textRect = new Rect();
+    private final TextWidthCache titleWidths = new TextWidthCache(titleTextPaint);
+    private final TextWidthCache valueWidths = new TextWidthCache(valuesTextPaint);
+    private final TextWidthCache nameWidths = new TextWidthCache(namesTextPaint);
 
     private final float topBottomPadding;
     private final float leftRightPadding;
@@ -58,7 +65,9 @@ public class Popup {
         titleTextLineHeight = -titleTextPaint.ascent() + titleTextPaint.descent();
 
         valuesTextPaint.setTextSize(valuesTextSize);
-        valuesTextLineHeight = -valuesTextPaint.ascent() + valuesTextPaint.descent();
+        valuesTextPaint.setFakeBoldText(true);
+        namesTextPaint.setTextSize(valuesTextSize);
+        valuesTextLineHeight = -namesTextPaint.ascent() + namesTextPaint.descent();
 
         circlePaint.setStrokeWidth(circleStrokeWidth);
 
@@ -73,21 +82,18 @@ public class Popup {
 
     public void drawPopup(Canvas canvas, Data data, float xOffs, float x, float chartWidth) {
 
-        titleTextPaint.getTextBounds(data.date, 0, data.date.length(), textRect);
-        float popupTitleWidth = textRect.width();
+        float popupTitleWidth = titleWidths.get(data.date);
         float popupHeight = topBottomPadding + titleTextLineHeight + verticalSpacing;
 
         float columnWidth = 0f;
         int column = 0;
-        for (Value value : data.values) {
+        for (int i = 0; i < data.valuesCount; i++) {
 
-            valuesTextPaint.setFakeBoldText(true);
-            valuesTextPaint.getTextBounds(value.stringValue, 0, value.stringValue.length(), textRect);
-            if (textRect.width() > columnWidth) columnWidth = textRect.width();
+            float valueWidth = valueWidths.get(data.stringValues[i]);
+            if (valueWidth > columnWidth) columnWidth = valueWidth;
 
-            valuesTextPaint.setFakeBoldText(false);
-            valuesTextPaint.getTextBounds(value.name, 0, value.name.length(), textRect);
-            if (textRect.width() > columnWidth) columnWidth = textRect.width();
+            float nameWidth = nameWidths.get(data.names[i]);
+            if (nameWidth > columnWidth) columnWidth = nameWidth;
 
             column++;
             if (column == POPUP_COLUMNS_COUNT) {
@@ -98,7 +104,7 @@ public class Popup {
         }
         if (column > 0) popupHeight += 2 * valuesTextLineHeight + topBottomPadding;
 
-        int columnsCount = Math.min(POPUP_COLUMNS_COUNT, data.values.size());
+        int columnsCount = Math.min(POPUP_COLUMNS_COUNT, data.valuesCount);
         float columnsWidthWithSpacing = columnsCount * columnWidth;
         if (columnsCount > 1) {
             columnsWidthWithSpacing += (columnsCount - 1) * horizontalSpacing;
@@ -140,35 +146,32 @@ public class Popup {
 
         if (columnsCount == 1) {
 
-            Value value = data.values.get(0);
-            valuesTextPaint.setColor(value.color);
+            String stringValue = data.stringValues[0];
+            String name = data.names[0];
+            valuesTextPaint.setColor(data.colors[0]);
+            namesTextPaint.setColor(data.colors[0]);
 
-            valuesTextPaint.setFakeBoldText(true);
-            valuesTextPaint.getTextBounds(value.stringValue, 0, value.stringValue.length(), textRect);
-            tx = (popupWidth - textRect.width()) / 2f;
-            canvas.drawText(value.stringValue, tx, ty - valuesTextPaint.ascent(), valuesTextPaint);
+            tx = (popupWidth - valueWidths.get(stringValue)) / 2f;
+            canvas.drawText(stringValue, tx, ty - valuesTextPaint.ascent(), valuesTextPaint);
 
-            valuesTextPaint.setFakeBoldText(false);
-            valuesTextPaint.getTextBounds(value.name, 0, value.name.length(), textRect);
-            tx = (popupWidth - textRect.width()) / 2f;
-            canvas.drawText(value.name, tx, ty + valuesTextLineHeight - valuesTextPaint.ascent(), valuesTextPaint);
+            tx = (popupWidth - nameWidths.get(name)) / 2f;
+            canvas.drawText(name, tx, ty + valuesTextLineHeight - namesTextPaint.ascent(), namesTextPaint);
 
         } else {
 
             column = 0;
-            for (Value value : data.values) {
+            for (int i = 0; i < data.valuesCount; i++) {
 
-                valuesTextPaint.setColor(value.color);
+                String stringValue = data.stringValues[i];
+                String name = data.names[i];
+                valuesTextPaint.setColor(data.colors[i]);
+                namesTextPaint.setColor(data.colors[i]);
 
                 tx = leftRightPadding + column * (columnWidth + horizontalSpacing);
 
-                valuesTextPaint.setFakeBoldText(true);
-                valuesTextPaint.getTextBounds(value.stringValue, 0, value.stringValue.length(), textRect);
-                canvas.drawText(value.stringValue, tx + (columnWidth - textRect.width()) / 2f, ty - valuesTextPaint.ascent(), valuesTextPaint);
+                canvas.drawText(stringValue, tx + (columnWidth - valueWidths.get(stringValue)) / 2f, ty - valuesTextPaint.ascent(), valuesTextPaint);
 
-                valuesTextPaint.setFakeBoldText(false);
-                valuesTextPaint.getTextBounds(value.name, 0, value.name.length(), textRect);
-                canvas.drawText(value.name, tx + (columnWidth - textRect.width()) / 2f, ty + valuesTextLineHeight - valuesTextPaint.ascent(), valuesTextPaint);
+                canvas.drawText(name, tx + (columnWidth - nameWidths.get(name)) / 2f, ty + valuesTextLineHeight - namesTextPaint.ascent(), namesTextPaint);
 
                 column++;
                 if (column == POPUP_COLUMNS_COUNT) {
@@ -182,19 +185,19 @@ public class Popup {
         canvas.restore();
     }
 
-    public void drawPoints(Canvas canvas, Data data, float xOffs, float x, float yScale) {
+    public void drawPoints(Canvas canvas, Data data, float xOffs, float x, float yScale, float chartHeight) {
         canvas.save();
         canvas.translate(-xOffs, 0f);
-        for (Value value : data.values) {
+        for (int i = 0; i < data.valuesCount; i++) {
 
-            float y = canvas.getHeight() - value.value * yScale;
+            float y = chartHeight - data.values[i] * yScale;
 
             circlePaint.setStyle(Paint.Style.FILL);
             circlePaint.setColor(circleInnerColor);
             canvas.drawCircle(x, y, circleRadius, circlePaint);
 
             circlePaint.setStyle(Paint.Style.STROKE);
-            circlePaint.setColor(value.color);
+            circlePaint.setColor(data.colors[i]);
             canvas.drawCircle(x, y, circleRadius, circlePaint);
 
         }
@@ -206,31 +209,89 @@ public class Popup {
         bgDrawable.draw(canvas);
     }
 
+    /**
+     * Selected point, reused for every selection: filled by {@link #set(float, long, String)} and
+     * {@link #addValue(String, long, String, int)} or copied with {@link #copyFrom(Data)}
+     */
     public static class Data {
-        public final float clickX;
-        public final long chartX;
-        private final String date;
-        private final List<Value> values;
+        public float clickX;
+        public long chartX;
+        private String date;
+
+        private int valuesCount;
+        private String[] names = new String[0];
+        private long[] values = new long[0];
+        private String[] stringValues = new String[0];
+        private int[] colors = new int[0];
 
-        public Data(float clickX, long chartX, String date, List<Value> values) {
+        public void set(float clickX, long chartX, String date) {
             this.clickX = clickX;
             this.chartX = chartX;
             this.date = date;
-            this.values = values;
+            valuesCount = 0;
+        }
+
+        public void addValue(String name, long value, String stringValue, int color) {
+            ensureCapacity(valuesCount + 1);
+            names[valuesCount] = name;
+            values[valuesCount] = value;
+            stringValues[valuesCount] = stringValue;
+            colors[valuesCount] = color;
+            valuesCount++;
+        }
+
+        public void copyFrom(Data other) {
+            set(other.clickX, other.chartX, other.date);
+            ensureCapacity(other.valuesCount);
+            System.arraycopy(other.names, 0, names, 0, other.valuesCount);
+            System.arraycopy(other.values, 0, values, 0, other.valuesCount);
+            System.arraycopy(other.stringValues, 0, stringValues, 0, other.valuesCount);
+            System.arraycopy(other.colors, 0, colors, 0, other.valuesCount);
+            valuesCount = other.valuesCount;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (names.length >= capacity) return;
+            String[] newNames = new String[capacity];
+            long[] newValues = new long[capacity];
+            String[] newStringValues = new String[capacity];
+            int[] newColors = new int[capacity];
+            System.arraycopy(names, 0, newNames, 0, valuesCount);
+            System.arraycopy(values, 0, newValues, 0, valuesCount);
+            System.arraycopy(stringValues, 0, newStringValues, 0, valuesCount);
+            System.arraycopy(colors, 0, newColors, 0, valuesCount);
+            names = newNames;
+            values = newValues;
+            stringValues = newStringValues;
+            colors = newColors;
         }
     }
 
-    public static class Value {
-        private final String name;
-        private final long value;
-        private final String stringValue;
-        private final int color;
-
-        public Value(String name, long value, int color) {
-            this.name = name;
-            this.value = value;
-            this.stringValue = String.valueOf(value);
-            this.color = color;
+    /**
+     * Widths of recently measured texts, slot is selected by identity of the string, colliding entry is overwritten
+     */
+    private static class TextWidthCache {
+
+        private static final int CACHE_BITS = 6;
+
+        private final Paint paint;
+        private final Rect textRect = new Rect();
+
+        private final String[] texts = new String[1 << CACHE_BITS];
+        private final float[] widths = new float[1 << CACHE_BITS];
+
+        private TextWidthCache(Paint paint) {
+            this.paint = paint;
+        }
+
+        private float get(String text) {
+            int slot = (System.identityHashCode(text) * 0x9E3779B9) >>> (32 - CACHE_BITS);
+            if (texts[slot] != text) {
+                paint.getTextBounds(text, 0, text.length(), textRect);
+                texts[slot] = text;
+                widths[slot] = textRect.width();
+            }
+            return widths[slot];
         }
     }
 
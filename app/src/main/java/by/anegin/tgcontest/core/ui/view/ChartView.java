@@ -1,12 +1,10 @@
 package by.anegin.tgcontest.core.ui.view;
 
-import android.animation.ValueAnimator;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.os.Build;
@@ -16,40 +14,43 @@ import android.os.SystemClock;
 import android.text.TextPaint;
 import android.util.AttributeSet;
 import android.util.TypedValue;
+import android.view.Choreographer;
 import android.view.MotionEvent;
+import android.view.TextureView;
 import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
+import android.view.ViewGroup;
 import android.view.ViewParent;
-import android.view.animation.AccelerateInterpolator;
-import android.view.animation.DecelerateInterpolator;
 import android.widget.OverScroller;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
 
+import by.anegin.tgcontest.ChartsApp;
 import by.anegin.tgcontest.R;
+import by.anegin.tgcontest.core.ui.AnimationClock;
+import by.anegin.tgcontest.core.ui.ChartRenderThread;
 import by.anegin.tgcontest.core.ui.ScaleAnimationHelper;
 import by.anegin.tgcontest.core.ui.ToggleAnimationHelper;
+import by.anegin.tgcontest.core.ui.model.ChartFrame;
 import by.anegin.tgcontest.core.ui.model.UiChart;
-import by.anegin.tgcontest.core.ui.model.UiDate;
-import by.anegin.tgcontest.core.ui.objects.Graph;
+import by.anegin.tgcontest.core.ui.objects.ChartRenderer;
+import by.anegin.tgcontest.core.ui.objects.GraphGeometry;
+import by.anegin.tgcontest.core.ui.objects.GraphState;
 import by.anegin.tgcontest.core.ui.objects.Grid;
 import by.anegin.tgcontest.core.ui.objects.Popup;
-import by.anegin.tgcontest.core.utils.AtomicRange;
+import by.anegin.tgcontest.core.utils.ComputeScheduler;
+import by.anegin.tgcontest.core.utils.LongSeries;
 
 public class ChartView extends View implements ScaleAnimationHelper.Callback, ToggleAnimationHelper.Callback {
 
     private static final int TOUCH_STATE_IDLE = 1;
     private static final int TOUCH_STATE_DRAG = 2;
     private static final int TOUCH_STATE_FLING = 3;
+    private static final int TOUCH_STATE_SCRUB = 4;     // long press and drag moves selection
 
     private static final int AUTOSCALE_ANIMATION_DURATION = 250;
     private static final int TOGGLE_ANIMATION_DURATION = 200;
@@ -78,13 +79,9 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
 
     private OnGraphVisibilityChangeListener onGraphVisibilityChangeListener;
 
-    private final Paint gridLinePaint = new Paint();
-
     private final TextPaint textPaint = new TextPaint();
     private final Paint paint = new Paint();
 
-    private final Matrix graphMatrix = new Matrix();
-
     private float gridLineWidth = 0f;
     private int gridLineColor;
 
@@ -93,18 +90,13 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
 
     private float graphStrokeWidth = 0f;
 
-    private final AtomicRange range = new AtomicRange();
+    // replaced as a whole on every change, so drawing and scale calculation take one consistent snapshot without locks
+    private volatile RenderState state = RenderState.EMPTY;
 
     private float xOffs = 0f;
     private float xScale = 0f;
     private volatile float yScale = 0f;
 
-    private long[] xValues;
-    private long minX;
-    private final List<UiDate> dates = new ArrayList<>();
-    private final List<Graph> graphs = new ArrayList<>();
-    private float uiChartWidth;
-
     private int touchSlop;
     private int minFlingVelocity;
     private int maxFlingVelocity;
@@ -117,28 +109,55 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
     private float lastTouchX;
     private long downTime;
 
-    private final ScaleAnimationHelper scaleAnimationHelper = new ScaleAnimationHelper(this, AUTOSCALE_ANIMATION_DURATION);
+    // advances all animations of the chart and invalidates it once per frame
+    private final AnimationClock animationClock = new AnimationClock(this::invalidate);
 
-    private final ToggleAnimationHelper toggleAnimationHelper = new ToggleAnimationHelper(this, TOGGLE_ANIMATION_DURATION);
+    private ScaleAnimationHelper scaleAnimationHelper;
+
+    // latest range requested by continuous input, applied once on the next frame
+    private float pendingRangeStart;
+    private float pendingRangeEnd;
+    private boolean rangeUpdatePending = false;
+    private Choreographer.FrameCallback rangeFrameCallback;
+    private final Runnable rangeUpdateRunnable = this::applyPendingRange;
+
+    private final ToggleAnimationHelper toggleAnimationHelper = new ToggleAnimationHelper(this, animationClock, TOGGLE_ANIMATION_DURATION);
 
     private final Rect textRect = new Rect();
 
     // =======
 
-    private final List<DateLabel> dateLabels = new ArrayList<>();
-    private final Map<UiDate, DateLabel> hidingDateLabels = new HashMap<>();
-
     private float dateLabelWidth = 0f;
 
+    // grids and date labels which are not shown anymore, reused instead of allocating new ones
+    private final List<Grid> gridPool = new ArrayList<>();
+    private final List<DateLabel> dateLabelPool = new ArrayList<>();
+
     // =======
 
-    private Popup popup;
-    private Popup.Data popupData;
+    private int popupTitleTextColor;
+    private float popupTitleTextSize;
+    private float popupValueTextSize;
+    private float popupTopBottomPadding;
+    private float popupLeftRightPadding;
+    private float pointRadius;
+    private int pointInnerColor;
+
+    private Popup.Data popupData;       // null or selectedData
+    private final Popup.Data selectedData = new Popup.Data();
+
+    private final Runnable startScrubRunnable = this::startScrubbing;
 
     private Float pendingClickX;
 
     // =======
 
+    private ChartRenderer renderer;             // draws frames in onDraw()
+    private final ChartFrame uiFrame = new ChartFrame();   // frame for renderer, refilled on every draw
+    private ChartRenderThread renderThread;     // draws frames into render target, if it is set
+
+    // =======
+
     public ChartView(Context context) {
         super(context);
         init(context, null, 0);
@@ -165,18 +184,15 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
         graphStrokeWidth = viewAttrs.getDimension(R.styleable.ChartView_graph_line_width, defaultGraphLineWidth);
         textSize = viewAttrs.getDimension(R.styleable.ChartView_text_size, 0f);
         textColor = viewAttrs.getColor(R.styleable.ChartView_text_color, Color.TRANSPARENT);
-        int popupTitleTextColor = viewAttrs.getColor(R.styleable.ChartView_popup_title_color, Color.TRANSPARENT);
-        float popupTitleTextSize = viewAttrs.getDimension(R.styleable.ChartView_popup_title_text_size, 0f);
-        float popupValueTextSize = viewAttrs.getDimension(R.styleable.ChartView_popup_value_text_size, 0f);
-        float popupTopBottomPadding = viewAttrs.getDimension(R.styleable.ChartView_popup_top_bottom_padding, 0f);
-        float popupLeftRightPadding = viewAttrs.getDimension(R.styleable.ChartView_popup_left_right_padding, 0f);
-        float pointRadius = viewAttrs.getDimension(R.styleable.ChartView_point_radius, 0f);
-        int pointInnerColor = viewAttrs.getColor(R.styleable.ChartView_point_inner_color, Color.TRANSPARENT);
+        popupTitleTextColor = viewAttrs.getColor(R.styleable.ChartView_popup_title_color, Color.TRANSPARENT);
+        popupTitleTextSize = viewAttrs.getDimension(R.styleable.ChartView_popup_title_text_size, 0f);
+        popupValueTextSize = viewAttrs.getDimension(R.styleable.ChartView_popup_value_text_size, 0f);
+        popupTopBottomPadding = viewAttrs.getDimension(R.styleable.ChartView_popup_top_bottom_padding, 0f);
+        popupLeftRightPadding = viewAttrs.getDimension(R.styleable.ChartView_popup_left_right_padding, 0f);
+        pointRadius = viewAttrs.getDimension(R.styleable.ChartView_point_radius, 0f);
+        pointInnerColor = viewAttrs.getColor(R.styleable.ChartView_point_inner_color, Color.TRANSPARENT);
         viewAttrs.recycle();
 
-        gridLinePaint.setStyle(Paint.Style.STROKE);
-        gridLinePaint.setColor(gridLineColor);
-
         ViewConfiguration vc = ViewConfiguration.get(context);
         touchSlop = vc.getScaledTouchSlop();
         minFlingVelocity = vc.getScaledMinimumFlingVelocity();
@@ -185,96 +201,167 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
 
         flingScroller = new OverScroller(context);
 
+        ComputeScheduler computeScheduler = ((ChartsApp) context.getApplicationContext()).getAppComponent().getComputeScheduler();
+        scaleAnimationHelper = new ScaleAnimationHelper(this, computeScheduler, animationClock, AUTOSCALE_ANIMATION_DURATION);
+
         textPaint.setTextSize(textSize);
         textPaint.setColor(textColor);
 
         paint.setColor(Color.BLUE);
         paint.setStyle(Paint.Style.STROKE);
 
-        popup = new Popup(context,
+        renderer = createRenderer();
+    }
+
+    private ChartRenderer createRenderer() {
+        Popup popup = new Popup(getContext(),
                 popupTitleTextColor, popupTitleTextSize,
                 popupValueTextSize,
                 popupTopBottomPadding, popupLeftRightPadding,
                 graphStrokeWidth, pointRadius, pointInnerColor);
+        return new ChartRenderer(gridLineWidth, gridLineColor, textColor, textSize, graphStrokeWidth, popup);
     }
 
-    @Override
-    public void onDraw(Canvas canvas) {
-        // horizontal grid lines
-        gridLinePaint.setStrokeWidth(gridLineWidth * 2f);
-        canvas.drawLine(0f, getHeight(), getWidth(), getHeight(), gridLinePaint);
-
-        if (xScale == 0f || yScale == 0f) return;
-
-        canvas.save();
-        canvas.translate(-xOffs, 0f);
-
-        // selected data (vertical line)
-        Popup.Data popupData = this.popupData;
-        if (popupData != null) {
-            gridLinePaint.setStrokeWidth(gridLineWidth * 2f);
-            float x = popupData.chartX * xScale;
-            canvas.drawLine(x, 0, x, getHeight(), gridLinePaint);
+    /**
+     * Moves drawing to a separate thread which draws into given texture view, or back to onDraw() if it is null.
+     * <p>
+     * Texture view must be placed at the same position as this view and match its height,
+     * its bottom margin is replaced so it extends below the chart by height of date labels.
+     */
+    public void setRenderTarget(TextureView textureView) {
+        if (renderThread != null) {
+            renderThread.quit();
+            renderThread = null;
         }
-
-        // date labels
-        float dateLabelsY = getHeight() + 1.2f * (-textPaint.ascent() + textPaint.descent());
-        textPaint.setAlpha(255);
-        synchronized (dates) {
-            canvas.drawText(dates.get(0).text, 0f, dateLabelsY, textPaint);
-            canvas.drawText(dates.get(dates.size() - 1).text, uiChartWidth * xScale - dateLabelWidth, dateLabelsY, textPaint);
+        if (textureView != null) {
+            ViewGroup.LayoutParams params = textureView.getLayoutParams();
+            if (params instanceof ViewGroup.MarginLayoutParams) {
+                ((ViewGroup.MarginLayoutParams) params).bottomMargin = -(int) Math.ceil(renderer.getDateLabelsHeight());
+                textureView.setLayoutParams(params);
+            }
+            renderThread = new ChartRenderThread(textureView, createRenderer());
+            renderThread.start();
         }
-        float halfDateWidth = dateLabelWidth / 2f;
-        for (DateLabel label : dateLabels) {
-            textPaint.setAlpha((int) (label.alpha * 255));
-            canvas.drawText(label.uiDate.text, label.sx - halfDateWidth, dateLabelsY, textPaint);
+        invalidate();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        if (visibility == VISIBLE) {
+            animationClock.resume();
+        } else {
+            animationClock.pause();
         }
-        for (DateLabel label : hidingDateLabels.values()) {
-            textPaint.setAlpha((int) (label.alpha * 255));
-            canvas.drawText(label.uiDate.text, label.sx - halfDateWidth, dateLabelsY, textPaint);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        cancelPendingRange();
+        removeCallbacks(startScrubRunnable);
+        scaleAnimationHelper.cancel();
+        animationClock.pause();
+        setRenderTarget(null);
+    }
+
+    @Override
+    public void onDraw(Canvas canvas) {
+        if (renderThread != null) {
+            ChartFrame frame = renderThread.obtainFrame();
+            fillFrame(frame);
+            renderThread.publish(frame);
+        } else {
+            fillFrame(uiFrame);
+            renderer.draw(canvas, uiFrame);
         }
+    }
 
-        canvas.restore();
+    private void fillFrame(ChartFrame frame) {
+        RenderState state = this.state;
+        float contentWidth = state.uiChartWidth * xScale;
+        boolean hasScale = xScale != 0f && yScale != 0f;
 
-        // y grid lines
-        synchronized (grids) {
-            for (Grid grid : grids) {
-                grid.drawLines(canvas, yScale);
+        List<GraphState> graphs = state.graphs;
+        int graphsCount = 0;
+        if (hasScale) {
+            for (int i = 0; i < graphs.size(); i++) {
+                if (graphs.get(i).state != GraphState.STATE_HIDDEN) graphsCount++;
             }
         }
-        synchronized (hidingGrids) {
-            for (Grid grid : hidingGrids) {
-                grid.drawLines(canvas, yScale);
-            }
+        List<DateLabel> dateLabels = state.dateLabels;
+        List<DateLabel> hidingDateLabels = state.hidingDateLabels;
+        LongSeries xValues = state.xValues;
+        int labelsCount = hasScale && xValues != null && xValues.size() > 0 ? 2 + dateLabels.size() + hidingDateLabels.size() : 0;
+        List<Grid> grids = state.grids;
+        List<Grid> hidingGrids = state.hidingGrids;
+        int gridLinesCount = hasScale ? Grid.LINES_COUNT * (grids.size() + hidingGrids.size()) : 0;
+        frame.setCounts(graphsCount, labelsCount, gridLinesCount);
+
+        frame.width = getWidth();
+        frame.height = getHeight();
+        frame.xOffs = xOffs;
+        frame.xScale = xScale;
+        frame.yScale = yScale;
+        frame.pointsPerPixel = xValues != null && contentWidth > 0f ? xValues.size() / contentWidth : 0f;
+        frame.contentWidth = contentWidth;
+        frame.setPopupData(popupData);
+
+        // graphs
+        int g = 0;
+        for (int i = 0; i < graphs.size() && g < graphsCount; i++) {
+            GraphState graph = graphs.get(i);
+            if (graph.state == GraphState.STATE_HIDDEN) continue;
+            frame.graphs[g] = graph.geometry;
+            frame.graphAlphas[g] = graph.alpha;
+            g++;
         }
 
-        // charts
-        synchronized (graphs) {
-            canvas.save();
-            canvas.clipRect(0f, 0f, getWidth(), getHeight());
-            for (Graph graph : graphs) {
-                graph.draw(canvas);
+        // date labels
+        if (labelsCount > 0) {
+            frame.labelTexts[0] = state.uiChart.getDateText(0);
+            frame.labelXs[0] = 0f;
+            frame.labelAlphas[0] = 1f;
+            frame.labelTexts[1] = state.uiChart.getDateText(xValues.size() - 1);
+            frame.labelXs[1] = contentWidth - dateLabelWidth;
+            frame.labelAlphas[1] = 1f;
+            int l = 2;
+            for (int i = 0; i < dateLabels.size(); i++) {
+                l = addDateLabel(frame, dateLabels.get(i), l);
+            }
+            for (int i = 0; i < hidingDateLabels.size(); i++) {
+                l = addDateLabel(frame, hidingDateLabels.get(i), l);
             }
-            canvas.restore();
         }
 
-        // y grid labels
-        synchronized (grids) {
-            for (Grid grid : grids) {
-                grid.drawLabels(canvas, yScale);
+        // y grids
+        if (gridLinesCount > 0) {
+            int l = 0;
+            for (int i = 0; i < grids.size(); i++) {
+                l = addGridLines(frame, grids.get(i), l);
             }
-        }
-        synchronized (hidingGrids) {
-            for (Grid grid : hidingGrids) {
-                grid.drawLabels(canvas, yScale);
+            for (int i = 0; i < hidingGrids.size(); i++) {
+                l = addGridLines(frame, hidingGrids.get(i), l);
             }
         }
+    }
 
-        // popup
-        if (popupData != null) {
-            popup.drawPoints(canvas, popupData, xOffs, popupData.chartX * xScale, yScale);
-            popup.drawPopup(canvas, popupData, xOffs, popupData.chartX * xScale, uiChartWidth * xScale);
+    private int addDateLabel(ChartFrame frame, DateLabel label, int offset) {
+        frame.labelTexts[offset] = label.text;
+        frame.labelXs[offset] = label.sx - dateLabelWidth / 2f;
+        frame.labelAlphas[offset] = label.alpha;
+        return offset + 1;
+    }
+
+    private int addGridLines(ChartFrame frame, Grid grid, int offset) {
+        float alpha = grid.getAlpha(yScale);
+        for (int line = 0; line < Grid.LINES_COUNT; line++) {
+            frame.gridLevels[offset] = grid.getLevel(line);
+            frame.gridTitles[offset] = grid.getTitle(line);
+            frame.gridAlphas[offset] = alpha;
+            offset++;
         }
+        return offset;
     }
 
     @Override
@@ -284,9 +371,19 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
     }
 
     private void calculateXScale() {
+        RenderState state = this.state;
+        float uiChartWidth = state.uiChartWidth;
         if (uiChartWidth == 0 || getWidth() == 0) return;
-        float newXScale = getWidth() / (uiChartWidth * range.getSize());
-        float newXOffs = newXScale * range.getStart() * uiChartWidth;
+        float rangeSize = state.rangeEnd - state.rangeStart;
+        float newXScale = getWidth() / (uiChartWidth * rangeSize);
+        float newXOffs = newXScale * state.rangeStart * uiChartWidth;
+
+        // lists are copied only when labels are added or removed, positions of labels are updated in place
+        UiChart uiChart = state.uiChart;
+        LongSeries xValues = state.xValues;
+        List<DateLabel> dateLabels = state.dateLabels;
+        List<DateLabel> hidingDateLabels = state.hidingDateLabels;
+        int fadingOutFrom = hidingDateLabels.size();
 
         int labelsCount = dateLabels.size();
         if (labelsCount == 0) {
@@ -297,16 +394,21 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
             float remainingWidth = minXScale * uiChartWidth - dateLabelWidth * 2;   // excluding first/last date
             float preSpacing = dateLabelWidth * 0.8f;
             labelsCount = (int) Math.floor((remainingWidth - preSpacing) / (dateLabelWidth + preSpacing));
+            if (labelsCount <= 0 || dateLabelWidth <= 0f) {
+                // no labels fit between first and last dates (or dates are not measured), there is nothing to place or split
+                labelsCount = 0;
+            }
             float labelsSpacing = (remainingWidth - dateLabelWidth * labelsCount) / (labelsCount + 1);
 
-            // add initial set of labels
+            // add initial set of labels, empty list is kept when there are none, e.g. on every frame of a narrow chart
+            if (labelsCount > 0) dateLabels = new ArrayList<>(labelsCount);
             float x = 1.5f * dateLabelWidth + labelsSpacing;
             for (int i = 0; i < labelsCount; i++) {
-                dateLabels.add(new DateLabel(findNearestDate(x / minXScale, dates), x, 1f));
+                dateLabels.add(obtainDateLabel(uiChart, findNearestDate(x / minXScale, xValues), x, 1f));
                 x += dateLabelWidth + labelsSpacing;
             }
 
-            if (range.getSize() < 1f) {
+            if (rangeSize < 1f && labelsCount > 0) {
                 // try to increase spacing between labels until we can insert new labels or reach newXScale
                 float spacingToAddLabels = dateLabelWidth * 1.5f;
                 float scale;
@@ -322,8 +424,8 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
                     remainingWidth = scale * uiChartWidth - dateLabelWidth * 2;
                     labelsSpacing = (remainingWidth - dateLabelWidth * labelsCount) / (labelsCount + 1);
                     x = 1.5f * dateLabelWidth + labelsSpacing;
-                    for (DateLabel label : dateLabels) {
-                        label.sx = x;
+                    for (int i = 0; i < dateLabels.size(); i++) {
+                        dateLabels.get(i).sx = x;
                         x += dateLabelWidth + labelsSpacing;
                     }
 
@@ -333,19 +435,13 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
                         List<DateLabel> newLabels = new ArrayList<>(dateLabels.size() * 2 + 1);
 
                         x = dateLabelWidth + distance / 2;
-
-                        DateLabel newLabel = new DateLabel(findNearestDate(x / scale, dates), x, 1f);
-                        newLabels.add(newLabel);
-
-                        for (DateLabel label : dateLabels) {
-                            newLabels.add(label);
+                        newLabels.add(obtainDateLabel(uiChart, findNearestDate(x / scale, xValues), x, 1f));
+                        for (int i = 0; i < dateLabels.size(); i++) {
+                            newLabels.add(dateLabels.get(i));
                             x += dateLabelWidth + distance;
-                            newLabel = new DateLabel(findNearestDate(x / scale, dates), x, 1f);
-                            newLabels.add(newLabel);
+                            newLabels.add(obtainDateLabel(uiChart, findNearestDate(x / scale, xValues), x, 1f));
                         }
-
-                        dateLabels.clear();
-                        dateLabels.addAll(newLabels);
+                        dateLabels = newLabels;
 
                         labelsCount = dateLabels.size();
                     }
@@ -359,13 +455,14 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
             float remainingWidth = newXScale * uiChartWidth - dateLabelWidth * 2;   // excluding first/last date
             float labelsSpacing = (remainingWidth - dateLabelWidth * labelsCount) / (labelsCount + 1);
             float x = 1.5f * dateLabelWidth + labelsSpacing;
-            for (DateLabel label : dateLabels) {
-                label.sx = x;
+            for (int i = 0; i < labelsCount; i++) {
+                dateLabels.get(i).sx = x;
                 x += dateLabelWidth + labelsSpacing;
             }
 
             // move existing hiding lables for new scale
-            for (DateLabel label : hidingDateLabels.values()) {
+            for (int i = 0; i < hidingDateLabels.size(); i++) {
+                DateLabel label = hidingDateLabels.get(i);
                 label.sx = (label.sx / xScale) * newXScale;
             }
 
@@ -376,119 +473,182 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
                 // spacing is increasing and it enough to insert new labels
                 // insert new lables with fade-in animation
 
-                List<DateLabel> newLabels = new ArrayList<>(dateLabels.size() * 2 + 1);
+                List<DateLabel> newLabels = new ArrayList<>(labelsCount * 2 + 1);
+                hidingDateLabels = new ArrayList<>(hidingDateLabels);
                 x = dateLabelWidth + distance / 2;
-                DateLabel newLabel = new DateLabel(findNearestDate(x / newXScale, dates), x, 0f);
-                newLabels.add(newLabel);
-                newLabel.fadeIn();
-                for (DateLabel label : dateLabels) {
-                    newLabels.add(label);
+                newLabels.add(fadeInDateLabel(uiChart, findNearestDate(x / newXScale, xValues), x, hidingDateLabels));
+                for (int i = 0; i < labelsCount; i++) {
+                    newLabels.add(dateLabels.get(i));
                     x += dateLabelWidth + distance;
-                    newLabel = new DateLabel(findNearestDate(x / newXScale, dates), x, 0f);
-                    newLabels.add(newLabel);
-                    newLabel.fadeIn();
+                    newLabels.add(fadeInDateLabel(uiChart, findNearestDate(x / newXScale, xValues), x, hidingDateLabels));
                 }
-                dateLabels.clear();
-                dateLabels.addAll(newLabels);
+                dateLabels = newLabels;
+                fadingOutFrom = hidingDateLabels.size();
 
             } else if (newXScale < xScale && distance < dateLabelWidth * 0.3f) {
                 // spacing is decreasing and became less than minimum
-                // remove odd labels with animation
-
-                // find all odd labels
-                List<DateLabel> labelsToRemove = new ArrayList<>();
-                for (int i = 0; i < dateLabels.size(); i += 2) {
-                    labelsToRemove.add(dateLabels.get(i));
-                }
-
-                // remove from list of visible labels
-                dateLabels.removeAll(labelsToRemove);
-
-                // add to list of hiding labels, execute fade-out animation
-                for (DateLabel label : labelsToRemove) {
-                    hidingDateLabels.put(label.uiDate, label);
-                    label.fadeOut();
+                // move odd labels to hiding labels, they start fading out below
+                List<DateLabel> newLabels = new ArrayList<>(labelsCount / 2);
+                hidingDateLabels = new ArrayList<>(hidingDateLabels);
+                for (int i = 0; i < labelsCount; i++) {
+                    (i % 2 == 0 ? hidingDateLabels : newLabels).add(dateLabels.get(i));
                 }
+                dateLabels = newLabels;
             }
         }
 
+        if (dateLabels != state.dateLabels || hidingDateLabels != state.hidingDateLabels) {
+            this.state = state.withDateLabels(dateLabels, hidingDateLabels);
+        }
         this.xScale = newXScale;
         this.xOffs = newXOffs;
+
+        for (int i = hidingDateLabels.size() - 1; i >= fadingOutFrom; i--) {
+            hidingDateLabels.get(i).fadeOut();
+        }
+
         invalidateOnAnimation();
     }
 
-    private static UiDate findNearestDate(float x, List<UiDate> dates) {
-        // find date nearest to X (canvas x)
-        float dist;
-        float minDist = Float.MAX_VALUE;
-        UiDate nearestDate = null;
-        for (UiDate uiDate : dates) {
-            dist = Math.abs(uiDate.x - x);
-            if (dist < minDist) {
-                minDist = dist;
-                nearestDate = uiDate;
+    /**
+     * New transparent label fading in, hiding label of the same date is replaced by it
+     */
+    private DateLabel fadeInDateLabel(UiChart uiChart, int dateIndex, float sx, List<DateLabel> hidingDateLabels) {
+        for (int i = hidingDateLabels.size() - 1; i >= 0; i--) {
+            DateLabel hidingLabel = hidingDateLabels.get(i);
+            if (hidingLabel.dateIndex == dateIndex) {
+                hidingDateLabels.remove(i);
+                recycleDateLabel(hidingLabel);
             }
         }
-        return nearestDate;
+        DateLabel label = obtainDateLabel(uiChart, dateIndex, sx, 0f);
+        label.fadeIn();
+        return label;
+    }
+
+    private static int findNearestDate(float x, LongSeries xValues) {
+        // find index of date nearest to X (canvas x)
+        return UiChart.findNearestIndex(xValues, x);
     }
 
     // ==========
 
     public void setRange(float start, float end, boolean animateYScale) {
+        stopTouchScrolling();
+        cancelPendingRange();
+
+        updateRanges(start, end, animateYScale);
+        invalidateOnAnimation();
+    }
+
+    /**
+     * Same as {@link #setRange(float, float, boolean)} with animated y scale, but the range is applied on the next frame,
+     * so when range is requested more often than frames are drawn, only the latest one is laid out and scaled
+     */
+    public void requestRange(float start, float end) {
+        stopTouchScrolling();
+        postRange(start, end);
+    }
+
+    private void stopTouchScrolling() {
+        boolean wasFlinging = touchState == TOUCH_STATE_FLING;
         touchState = TOUCH_STATE_IDLE;
 
         flingScroller.forceFinished(true);
+        if (wasFlinging) {
+            fitScaleToRange();
+        }
 
         if (velocityTracker != null) {
             velocityTracker.recycle();
             velocityTracker = null;
         }
+    }
 
-        updateRanges(start, end, animateYScale);
+    /**
+     * Fits y scale back to the current range when fling is interrupted before reaching its final range
+     */
+    private void fitScaleToRange() {
+        RenderState state = this.state;
+        if (state.scaleRangeStart != state.rangeStart || state.scaleRangeEnd != state.rangeEnd) {
+            this.state = state.withRange(state.rangeStart, state.rangeEnd, state.rangeStart, state.rangeEnd);
+            scaleAnimationHelper.calculate(true);
+        }
+    }
+
+    private void postRange(float start, float end) {
+        pendingRangeStart = start;
+        pendingRangeEnd = end;
+        if (rangeUpdatePending) return;
+        rangeUpdatePending = true;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (rangeFrameCallback == null) {
+                rangeFrameCallback = frameTimeNanos -> applyPendingRange();
+            }
+            Choreographer.getInstance().postFrameCallback(rangeFrameCallback);
+        } else {
+            post(rangeUpdateRunnable);
+        }
+    }
+
+    private void cancelPendingRange() {
+        if (!rangeUpdatePending) return;
+        rangeUpdatePending = false;
+
+        if (rangeFrameCallback != null) {
+            Choreographer.getInstance().removeFrameCallback(rangeFrameCallback);
+        }
+        removeCallbacks(rangeUpdateRunnable);
+    }
+
+    private void applyPendingRange() {
+        if (!rangeUpdatePending) return;
+        rangeUpdatePending = false;
+
+        updateRanges(pendingRangeStart, pendingRangeEnd, true);
         invalidateOnAnimation();
     }
 
     public void setUiChart(UiChart uiChart, Set<String> hiddenGraphsIds) {
-        synchronized (graphs) {
-            dates.clear();
-            graphs.clear();
-
-            dateLabels.clear();
-            hidingDateLabels.clear();
-
-            popupData = null;
-
-            if (uiChart != null) {
-                xValues = uiChart.xValues;
-                minX = uiChart.minX;
-
-                uiChartWidth = uiChart.width;
-                for (Graph g : uiChart.graphs) {
-                    Graph graph = new Graph(g, graphStrokeWidth);
-                    if (hiddenGraphsIds.contains(graph.id)) {
-                        graph.state = Graph.STATE_HIDDEN;
-                        graph.alpha = 0f;
-                    } else {
-                        graph.state = Graph.STATE_VISIBLE;
-                        graph.alpha = 1f;
-                    }
-                    graphs.add(graph);
-                }
-                dates.addAll(uiChart.dates);
+        RenderState state = this.state;
+        for (int i = 0; i < state.dateLabels.size(); i++) {
+            recycleDateLabel(state.dateLabels.get(i));
+        }
+        for (int i = 0; i < state.hidingDateLabels.size(); i++) {
+            recycleDateLabel(state.hidingDateLabels.get(i));
+        }
 
-                float maxTextWidth = 0f;
-                for (UiDate date : uiChart.dates) {
-                    textPaint.getTextBounds(date.text, 0, date.text.length(), textRect);
-                    if (textRect.width() > maxTextWidth) maxTextWidth = textRect.width();
+        popupData = null;
+
+        if (uiChart != null) {
+            // lines are drawn by renderers, view keeps only their visibility
+            List<GraphState> graphs = new ArrayList<>(uiChart.graphs.size());
+            for (GraphGeometry geometry : uiChart.graphs) {
+                GraphState graph = new GraphState(geometry);
+                if (hiddenGraphsIds.contains(graph.id)) {
+                    graph.state = GraphState.STATE_HIDDEN;
+                    graph.alpha = 0f;
+                } else {
+                    graph.state = GraphState.STATE_VISIBLE;
+                    graph.alpha = 1f;
                 }
-                dateLabelWidth = maxTextWidth;
+                graphs.add(graph);
+            }
 
-            } else {
-                xValues = null;
-                minX = 0;
-                uiChartWidth = 0f;
-                yScale = 0f;
+            // dates are formatted lazily, so the widest label is measured on samples of every month
+            float maxTextWidth = 0f;
+            for (String text : uiChart.getDateTextSamples()) {
+                textPaint.getTextBounds(text, 0, text.length(), textRect);
+                if (textRect.width() > maxTextWidth) maxTextWidth = textRect.width();
             }
+            dateLabelWidth = maxTextWidth;
+
+            this.state = state.withChart(uiChart, graphs);
+
+        } else {
+            this.state = state.withChart(null, Collections.emptyList());
+            yScale = 0f;
         }
         calculateXScale();
         scaleAnimationHelper.calculate(false);
@@ -542,7 +702,7 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
     }
 
     public int getGraphsCount() {
-        return graphs.size();
+        return state.graphs.size();
     }
 
     // ==========
@@ -556,38 +716,52 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
             start -= (end - 1f);
             end = 1f;
         }
-        if (range.checkNotEqualsAndSet(start, end)) {
+        RenderState state = this.state;
+        if (start != state.rangeStart || end != state.rangeEnd) {
+            // during fling y scale is already animated to the final range
+            boolean flinging = touchState == TOUCH_STATE_FLING;
+            if (flinging) {
+                this.state = state.withRange(start, end, state.scaleRangeStart, state.scaleRangeEnd);
+            } else {
+                this.state = state.withRange(start, end, start, end);
+            }
             if (onRangeChangeListener != null) {
                 onRangeChangeListener.onRangeChangeListener(start, end);
             }
             calculateXScale();
-            scaleAnimationHelper.calculate(animateYScale);
+            if (!flinging) {
+                scaleAnimationHelper.calculate(animateYScale);
+            }
         }
     }
 
     @Override
-    public ScaleAnimationHelper.CalcResult calculateNewScale() {
-        float uiChartWidth;
-        List<Graph> graphs;
-        synchronized (this.graphs) {
-            uiChartWidth = this.uiChartWidth;
-            graphs = new ArrayList<>(this.graphs);
+    public void calculateNewScale(ScaleAnimationHelper.CalcResult result) {
+        RenderState state = this.state;
+        List<GraphState> graphs = state.graphs;
+        if (state.uiChartWidth == 0f || graphs.isEmpty()) {
+            result.set(yScale, 0f);
+            return;
         }
-        if (uiChartWidth == 0f || graphs.isEmpty())
-            return new ScaleAnimationHelper.CalcResult(yScale, 0f);
 
-        float startX = uiChartWidth * range.getStart();
-        float endX = uiChartWidth * range.getEnd();
+        float startX = state.uiChartWidth * state.scaleRangeStart;
+        float endX = state.uiChartWidth * state.scaleRangeEnd;
 
         float maxY = 0f;
-        for (Graph graph : graphs) {
-            float max = graph.findMaxYInRange(startX, endX);
+        for (int i = 0; i < graphs.size(); i++) {
+            float max = graphs.get(i).findMaxYInRange(startX, endX);
             if (max > maxY) maxY = max;
         }
 
         float scale = (float) getHeight() / maxY;
 
-        return new ScaleAnimationHelper.CalcResult(scale, maxY);
+        result.set(scale, maxY);
+    }
+
+    @Override
+    public int getCalculationSize() {
+        RenderState state = this.state;
+        return state.xValues != null ? state.graphs.size() * state.xValues.size() : 0;
     }
 
     @Override
@@ -600,49 +774,46 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
         if (scale == 0f) return;
         yScale = scale;
 
-        graphMatrix.reset();
-        graphMatrix.setTranslate(-xOffs, getHeight());
-        graphMatrix.preScale(xScale, -yScale);
-
-        synchronized (graphs) {
-            for (Graph graph : graphs) {
-                graph.transform(graphMatrix);
-            }
-        }
-
-        if (lastGrid != null) {
-
-            if (lastGrid.targetYScale != calcResult.targetScale) {
-                grids.remove(lastGrid);
-                hidingGrids.add(lastGrid);
-                lastGrid.fadeOut(this, hidingGrids::remove);
-                lastGrid = null;
+        if (lastGrid == null || lastGrid.getTargetYScale() != calcResult.targetScale) {
+            RenderState state = this.state;
+            List<Grid> grids = new ArrayList<>(state.grids);
+            List<Grid> hidingGrids = state.hidingGrids;
 
-                lastGrid = new Grid(scale, calcResult.targetScale, calcResult.maxY,
-                        gridLineColor, gridLineWidth, textColor, textSize);
-                grids.add(lastGrid);
+            Grid hidingGrid = lastGrid;
+            if (hidingGrid != null) {
+                grids.remove(hidingGrid);
+                hidingGrids = new ArrayList<>(hidingGrids);
+                hidingGrids.add(hidingGrid);
             }
-
-        } else {
-            lastGrid = new Grid(scale, calcResult.targetScale, calcResult.maxY,
-                    gridLineColor, gridLineWidth, textColor, textSize);
+            lastGrid = obtainGrid(scale, calcResult.targetScale, calcResult.maxY);
             grids.add(lastGrid);
-        }
 
-        synchronized (grids) {
-            if (grids.isEmpty()) {
-                Grid grid = new Grid(yScale, calcResult.targetScale, calcResult.maxY,
-                        gridLineColor, gridLineWidth, textColor, textSize);
-                grids.add(grid);
+            this.state = state.withGrids(grids, hidingGrids);
+
+            if (hidingGrid != null) {
+                hidingGrid.fadeOut();
             }
         }
 
-        invalidateOnAnimation();
+        invalidate();
     }
 
     private Grid lastGrid;
-    private final List<Grid> grids = new ArrayList<>();
-    private final Set<Grid> hidingGrids = new HashSet<>();
+
+    private Grid obtainGrid(float fromYScale, float targetYScale, float maxY) {
+        int size = gridPool.size();
+        Grid grid = size > 0 ? gridPool.remove(size - 1) : new Grid(animationClock, this::removeHidingGrid);
+        return grid.set(fromYScale, targetYScale, maxY);
+    }
+
+    private void removeHidingGrid(Grid grid) {
+        RenderState state = this.state;
+        if (!state.hidingGrids.contains(grid)) return;
+        List<Grid> hidingGrids = new ArrayList<>(state.hidingGrids);
+        hidingGrids.remove(grid);
+        this.state = state.withGrids(state.grids, hidingGrids);
+        gridPool.add(grid);
+    }
 
     // ==================
 
@@ -657,11 +828,9 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
     // =======
 
     @Override
-    public Graph getGraph(String id) {
-        synchronized (graphs) {
-            for (Graph g : this.graphs)
-                if (g.id.equals(id)) return g;
-        }
+    public GraphState getGraph(String id) {
+        for (GraphState g : state.graphs)
+            if (g.id.equals(id)) return g;
         return null;
     }
 
@@ -670,11 +839,6 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
         scaleAnimationHelper.calculate(true);
     }
 
-    @Override
-    public void onGraphUpdated() {
-        invalidateOnAnimation();
-    }
-
     // =======
 
     @SuppressLint("ClickableViewAccessibility")
@@ -685,11 +849,17 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
             case MotionEvent.ACTION_DOWN: {
                 downX = touchX;
                 lastTouchX = downX;
+                boolean wasFlinging = touchState == TOUCH_STATE_FLING;
                 touchState = TOUCH_STATE_IDLE;
 
                 downTime = SystemClock.uptimeMillis();
+                removeCallbacks(startScrubRunnable);
+                postDelayed(startScrubRunnable, longPressTimeout);
 
                 flingScroller.forceFinished(true);
+                if (wasFlinging) {
+                    fitScaleToRange();
+                }
 
                 if (velocityTracker == null) {
                     velocityTracker = VelocityTracker.obtain();
@@ -703,13 +873,16 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
             case MotionEvent.ACTION_MOVE: {
                 if (touchState == TOUCH_STATE_IDLE && Math.abs(touchX - downX) > touchSlop) {
                     touchState = TOUCH_STATE_DRAG;
+                    removeCallbacks(startScrubRunnable);
 
                     ViewParent viewParent = getParent();
                     if (viewParent != null) {
                         viewParent.requestDisallowInterceptTouchEvent(true);
                     }
                 }
-                if (touchState == TOUCH_STATE_DRAG) {
+                if (touchState == TOUCH_STATE_SCRUB) {
+                    onClick(touchX);
+                } else if (touchState == TOUCH_STATE_DRAG) {
                     moveChart(touchX - lastTouchX);
 
                     popupData = null;
@@ -722,10 +895,16 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
                 break;
             }
             case MotionEvent.ACTION_UP: {
+                removeCallbacks(startScrubRunnable);
 
                 VelocityTracker velocityTracker = this.velocityTracker;
                 this.velocityTracker = null;
-                if (touchState == TOUCH_STATE_DRAG) {
+                if (touchState == TOUCH_STATE_SCRUB) {
+                    // selection stays where scrubbing ended
+                    if (velocityTracker != null) {
+                        velocityTracker.recycle();
+                    }
+                } else if (touchState == TOUCH_STATE_DRAG) {
                     if (velocityTracker != null) {
                         velocityTracker.computeCurrentVelocity(1000, maxFlingVelocity);
                         float xVelocity = velocityTracker.getXVelocity();
@@ -751,6 +930,7 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
                 break;
             }
             case MotionEvent.ACTION_CANCEL: {
+                removeCallbacks(startScrubRunnable);
                 touchState = TOUCH_STATE_IDLE;
                 if (velocityTracker != null) {
                     velocityTracker.recycle();
@@ -761,31 +941,55 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
         return true;
     }
 
+    /**
+     * Called after long press without dragging, following moves change selected point instead of scrolling
+     */
+    private void startScrubbing() {
+        if (touchState != TOUCH_STATE_IDLE) return;
+        touchState = TOUCH_STATE_SCRUB;
+
+        ViewParent viewParent = getParent();
+        if (viewParent != null) {
+            viewParent.requestDisallowInterceptTouchEvent(true);
+        }
+        onClick(lastTouchX);
+    }
+
     private void moveChart(float dx) {
-        float uiChartWidth = this.uiChartWidth;
+        RenderState state = this.state;
+        float uiChartWidth = state.uiChartWidth;
         if (uiChartWidth == 0f) return;
 
         float unscaledOffset = dx / xScale;
         float rangeOffs = unscaledOffset / uiChartWidth;
 
-        float newRangeStart = range.getStart() - rangeOffs;
-        float newRangeEnd = range.getEnd() - rangeOffs;
+        // moves are accumulated until the next frame
+        float rangeStart = rangeUpdatePending ? pendingRangeStart : state.rangeStart;
+        float rangeEnd = rangeUpdatePending ? pendingRangeEnd : state.rangeEnd;
 
-        updateRanges(newRangeStart, newRangeEnd, true);
-        invalidateOnAnimation();
+        postRange(rangeStart - rangeOffs, rangeEnd - rangeOffs);
     }
 
     private void flingChart(float xVelocity) {
-        float uiChartWidth = this.uiChartWidth;
+        applyPendingRange();
+
+        RenderState state = this.state;
+        float uiChartWidth = state.uiChartWidth;
         if (uiChartWidth == 0f) return;
 
-        int startX = (int) (xScale * range.getStart() * uiChartWidth);
+        int startX = (int) (xScale * state.rangeStart * uiChartWidth);
         int minX = 0;
         int maxX = (int) (xScale * uiChartWidth) - getWidth();
 
         flingScroller.forceFinished(true);
         flingScroller.fling(startX, 0, (int) -xVelocity, 0, minX, maxX, 0, 0);
 
+        // final position is known right away, so y scale is animated to it once instead of on every frame
+        float finalRangeStart = (float) flingScroller.getFinalX() / (xScale * uiChartWidth);
+        float finalRangeEnd = finalRangeStart + (state.rangeEnd - state.rangeStart);
+        this.state = state.withRange(state.rangeStart, state.rangeEnd, finalRangeStart, finalRangeEnd);
+        scaleAnimationHelper.calculate(true);
+
         invalidateOnAnimation();
     }
 
@@ -793,14 +997,16 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
     public void computeScroll() {
         if (touchState != TOUCH_STATE_FLING) return;
 
-        float uiChartWidth = this.uiChartWidth;
+        RenderState state = this.state;
+        float uiChartWidth = state.uiChartWidth;
         if (uiChartWidth == 0f) return;
+        float rangeSize = state.rangeEnd - state.rangeStart;
 
         if (flingScroller.computeScrollOffset()) {
 
             int currOffs = flingScroller.getCurrX();
             float newRangeStart = (float) currOffs / (xScale * uiChartWidth);
-            float newRangeEnd = newRangeStart + range.getSize();
+            float newRangeEnd = newRangeStart + rangeSize;
 
             updateRanges(newRangeStart, newRangeEnd, true);
             invalidateOnAnimation();
@@ -809,7 +1015,7 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
 
             int currOffs = flingScroller.getFinalX();
             float newRangeStart = (float) currOffs / (xScale * uiChartWidth);
-            float newRangeEnd = newRangeStart + range.getSize();
+            float newRangeEnd = newRangeStart + rangeSize;
 
             updateRanges(newRangeStart, newRangeEnd, true);
 
@@ -819,109 +1025,200 @@ public class ChartView extends View implements ScaleAnimationHelper.Callback, To
 
     // =======
 
-    private class DateLabel {
+    /**
+     * Date label between first and last dates, labels are reused through {@link #obtainDateLabel(UiChart, int, float, float)}
+     */
+    private class DateLabel implements AnimationClock.TweenListener {
 
-        private final UiDate uiDate;
+        private int dateIndex;
+        private String text;
         private float sx;  // screen x
         private float alpha;
-        private ValueAnimator fadeInAnimation;
 
-        private DateLabel(UiDate uiDate, float sx, float alpha) {
-            this.uiDate = uiDate;
+        private final int fadeTween = animationClock.newTween(this);
+
+        private DateLabel set(int dateIndex, String text, float sx, float alpha) {
+            cancelFade();
+            this.dateIndex = dateIndex;
+            this.text = text;
             this.sx = sx;
             this.alpha = alpha;
+            return this;
         }
 
         private void fadeIn() {
-            hidingDateLabels.remove(uiDate);   // cancel existing hiding label
+            animationClock.start(fadeTween, alpha, 1f, (long) (DATE_LABEL_FADE_DURATION * (1f - alpha)),
+                    AnimationClock.INTERPOLATOR_ACCELERATE);
+        }
 
-            long duration = (long) (DATE_LABEL_FADE_DURATION * (1f - alpha));
+        private void fadeOut() {
+            animationClock.start(fadeTween, alpha, 0f, (long) (DATE_LABEL_FADE_DURATION * alpha),
+                    AnimationClock.INTERPOLATOR_DECELERATE);
+        }
 
-            ValueAnimator anim = ValueAnimator.ofFloat(alpha, 1f);
-            anim.setDuration(duration);
-            anim.setInterpolator(new AccelerateInterpolator());
-            anim.addUpdateListener(animation -> {
-                alpha = (float) animation.getAnimatedValue();
-                invalidateOnAnimation();
-            });
-            this.fadeInAnimation = anim;
-            anim.start();
+        private void cancelFade() {
+            animationClock.cancel(fadeTween);
         }
 
-        private void fadeOut() {
-            if (fadeInAnimation != null && fadeInAnimation.isRunning()) {
-                fadeInAnimation.cancel();
+        @Override
+        public void onTweenUpdate(int tween, float value, boolean finished) {
+            alpha = value;
+            if (finished && alpha == 0f) {
+                removeHidingDateLabel(this);
             }
+        }
+    }
 
-            long duration = (long) (DATE_LABEL_FADE_DURATION * alpha);
+    private DateLabel obtainDateLabel(UiChart uiChart, int dateIndex, float sx, float alpha) {
+        int size = dateLabelPool.size();
+        DateLabel label = size > 0 ? dateLabelPool.remove(size - 1) : new DateLabel();
+        return label.set(dateIndex, uiChart.getDateText(dateIndex), sx, alpha);
+    }
 
-            ValueAnimator anim = ValueAnimator.ofFloat(alpha, 0f);
-            anim.setDuration(duration);
-            anim.setInterpolator(new DecelerateInterpolator());
-            anim.addUpdateListener(animation -> {
-                alpha = (float) animation.getAnimatedValue();
-                if (alpha == 0f) {
-                    hidingDateLabels.remove(uiDate);
-                }
-                invalidateOnAnimation();
-            });
-            anim.start();
-        }
+    private void recycleDateLabel(DateLabel label) {
+        label.cancelFade();
+        label.text = null;
+        dateLabelPool.add(label);
+    }
+
+    private void removeHidingDateLabel(DateLabel label) {
+        RenderState state = this.state;
+        if (!state.hidingDateLabels.contains(label)) return;
+        List<DateLabel> hidingDateLabels = new ArrayList<>(state.hidingDateLabels);
+        hidingDateLabels.remove(label);
+        this.state = state.withDateLabels(state.dateLabels, hidingDateLabels);
+        recycleDateLabel(label);
     }
 
+    /**
+     * Selects point nearest to clickX, called on every move while scrubbing, so it doesn't allocate
+     */
     private void onClick(float clickX) {
-        if (xValues == null || xValues.length == 0) return;
+        RenderState state = this.state;
+        LongSeries xValues = state.xValues;
+        if (xValues == null || xValues.size() == 0) return;
 
         float chartX = (xOffs + clickX) / xScale;
 
         // find index of chart data nearest to clickX
-        int nearestXIndex;
-        if (xValues.length == 1) {
-            nearestXIndex = 0;
-        } else {
-            if (chartX <= xValues[0]) {
-                nearestXIndex = 0;
-            } else if (chartX >= xValues[xValues.length - 1]) {
-                nearestXIndex = xValues.length - 1;
-            } else {
-                int i = 0;
-                while (i < xValues.length && chartX > xValues[i]) i++;
-                if (chartX - xValues[i - 1] < xValues[i] - chartX) {
-                    nearestXIndex = i - 1;
-                } else {
-                    nearestXIndex = i;
-                }
-            }
-        }
+        int nearestXIndex = UiChart.findNearestIndex(xValues, chartX);
         if (nearestXIndex != -1) {
-            long nearestX = xValues[nearestXIndex];
-
-            SimpleDateFormat sdf = new SimpleDateFormat("EEE, MMM dd", Locale.US);
-            String date = sdf.format(new Date(nearestX + minX));
-
-            List<Popup.Value> values = new ArrayList<>();
-            for (Graph graph : graphs) {
-                if (graph.isVisible() && nearestXIndex < graph.yValues.length) {
-                    values.add(new Popup.Value(
+            long nearestX = xValues.get(nearestXIndex);
+
+            // dates and value texts of all visible points are formatted on the first selection, scrubbing reuses them
+            int firstVisible = xValues.lowerBound(state.rangeStart * state.uiChartWidth);
+            int lastVisible = xValues.upperBound(state.rangeEnd * state.uiChartWidth) - 1;
+            state.uiChart.preparePopupDates(firstVisible, lastVisible, nearestXIndex);
+
+            selectedData.set(clickX, nearestX, state.uiChart.getPopupDate(nearestXIndex));
+            List<GraphState> graphs = state.graphs;
+            for (int i = 0; i < graphs.size(); i++) {
+                GraphState graph = graphs.get(i);
+                if (graph.isVisible() && nearestXIndex < graph.yValues.size()) {
+                    selectedData.addValue(
                             graph.name,
-                            graph.yValues[nearestXIndex],
-                            graph.color));
+                            graph.yValues.get(nearestXIndex),
+                            graph.geometry.getValueText(nearestXIndex, firstVisible, lastVisible),
+                            graph.color);
                 }
             }
 
-            popupData = new Popup.Data(clickX, nearestX, date, values);
+            popupData = selectedData;
             invalidate();
         }
     }
 
     // =======
 
+    /**
+     * Immutable state of the view, collections are never modified after the state is published.
+     * <p>
+     * Scale calculation reads it on compute threads, so a new state is published on every range change,
+     * it is the only object a frame of a drag allocates.
+     */
+    private static final class RenderState {
+
+        private static final RenderState EMPTY = new RenderState(0f, 1f, 0f, 1f,
+                null, null, 0f, Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList());
+
+        private final float rangeStart;
+        private final float rangeEnd;
+
+        // range y scale is fitted to, differs from the range only during fling
+        private final float scaleRangeStart;
+        private final float scaleRangeEnd;
+
+        private final UiChart uiChart;
+        private final LongSeries xValues;
+        private final float uiChartWidth;
+        private final List<GraphState> graphs;
+
+        private final List<DateLabel> dateLabels;
+        private final List<DateLabel> hidingDateLabels;
+
+        private final List<Grid> grids;
+        private final List<Grid> hidingGrids;
+
+        private RenderState(float rangeStart, float rangeEnd, float scaleRangeStart, float scaleRangeEnd,
+                            UiChart uiChart, LongSeries xValues, float uiChartWidth, List<GraphState> graphs,
+                            List<DateLabel> dateLabels, List<DateLabel> hidingDateLabels,
+                            List<Grid> grids, List<Grid> hidingGrids) {
+            this.rangeStart = rangeStart;
+            this.rangeEnd = rangeEnd;
+            this.scaleRangeStart = scaleRangeStart;
+            this.scaleRangeEnd = scaleRangeEnd;
+            this.uiChart = uiChart;
+            this.xValues = xValues;
+            this.uiChartWidth = uiChartWidth;
+            this.graphs = graphs;
+            this.dateLabels = dateLabels;
+            this.hidingDateLabels = hidingDateLabels;
+            this.grids = grids;
+            this.hidingGrids = hidingGrids;
+        }
+
+        private RenderState withRange(float rangeStart, float rangeEnd, float scaleRangeStart, float scaleRangeEnd) {
+            return new RenderState(rangeStart, rangeEnd, scaleRangeStart, scaleRangeEnd,
+                    uiChart, xValues, uiChartWidth, graphs,
+                    dateLabels, hidingDateLabels, grids, hidingGrids);
+        }
+
+        /**
+         * New chart, date labels are reset
+         */
+        private RenderState withChart(UiChart uiChart, List<GraphState> graphs) {
+            return new RenderState(rangeStart, rangeEnd, scaleRangeStart, scaleRangeEnd,
+                    uiChart,
+                    uiChart != null ? uiChart.xValues : null,
+                    uiChart != null ? uiChart.width : 0f,
+                    graphs,
+                    Collections.emptyList(), Collections.emptyList(), grids, hidingGrids);
+        }
+
+        private RenderState withDateLabels(List<DateLabel> dateLabels, List<DateLabel> hidingDateLabels) {
+            return new RenderState(rangeStart, rangeEnd, scaleRangeStart, scaleRangeEnd,
+                    uiChart, xValues, uiChartWidth, graphs,
+                    dateLabels, hidingDateLabels, grids, hidingGrids);
+        }
+
+        private RenderState withGrids(List<Grid> grids, List<Grid> hidingGrids) {
+            return new RenderState(rangeStart, rangeEnd, scaleRangeStart, scaleRangeEnd,
+                    uiChart, xValues, uiChartWidth, graphs,
+                    dateLabels, hidingDateLabels, grids, hidingGrids);
+        }
+    }
+
+    // =======
+
     @Override
     protected Parcelable onSaveInstanceState() {
         Parcelable superState = super.onSaveInstanceState();
         SavedState savedState = new SavedState(superState);
-        savedState.rangeStart = range.getStart();
-        savedState.rangeEnd = range.getEnd();
+        RenderState state = this.state;
+        savedState.rangeStart = state.rangeStart;
+        savedState.rangeEnd = state.rangeEnd;
         savedState.clickX = popupData != null ? popupData.clickX : null;
         return savedState;
     }
@@ -1,15 +1,13 @@
 package by.anegin.tgcontest.core.ui.view;
 
-import android.animation.Animator;
-import android.animation.ValueAnimator;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Paint;
-import android.os.Build;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.util.AttributeSet;
@@ -17,21 +15,24 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewParent;
-import android.view.animation.DecelerateInterpolator;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
+import by.anegin.tgcontest.ChartsApp;
 import by.anegin.tgcontest.R;
+import by.anegin.tgcontest.core.ui.AnimationClock;
 import by.anegin.tgcontest.core.ui.ScaleAnimationHelper;
 import by.anegin.tgcontest.core.ui.ToggleAnimationHelper;
 import by.anegin.tgcontest.core.ui.objects.Graph;
+import by.anegin.tgcontest.core.ui.objects.GraphGeometry;
+import by.anegin.tgcontest.core.ui.objects.PointsBufferPool;
 import by.anegin.tgcontest.core.ui.model.UiChart;
+import by.anegin.tgcontest.core.utils.ComputeScheduler;
 
-public class MiniChartView extends View implements ScaleAnimationHelper.Callback, ToggleAnimationHelper.Callback {
+public class MiniChartView extends View implements ScaleAnimationHelper.Callback, ToggleAnimationHelper.Callback,
+        AnimationClock.TweenListener {
 
     private static final int DRAG_RANGE = 1;
     private static final int DRAG_RANGE_START = 2;
@@ -39,6 +40,7 @@ public class MiniChartView extends View implements ScaleAnimationHelper.Callback
     private static final int DRAG_NONE = 4;
 
     private static final int TOGGLE_ANIMATION_DURATION = 200;
+    private static final int TOUCH_RIPPLE_ANIMATION_DURATION = 200;
 
     private final Paint windowPaint = new Paint();
     private final Paint touchRipplePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
@@ -61,21 +63,23 @@ public class MiniChartView extends View implements ScaleAnimationHelper.Callback
     private int touchSlop;
     private float dragSize;
 
-    private Animator touchRippleAnimation;
+    // advances all animations of the view and invalidates it once per frame
+    private final AnimationClock animationClock = new AnimationClock(this::invalidate);
+
+    private final int touchRippleTween = animationClock.newTween(this);
+    private float touchRippleValue = 0f;
     private float touchRippleRadius = 0f;
     private float touchRippleAlpha = 0f;
 
     private ChartView attachedChartView;
 
-    private final ScaleAnimationHelper scaleAnimationHelper = new ScaleAnimationHelper(this, TOGGLE_ANIMATION_DURATION);
+    private ScaleAnimationHelper scaleAnimationHelper;
 
-    private final ToggleAnimationHelper toggleAnimationHelper = new ToggleAnimationHelper(this, TOGGLE_ANIMATION_DURATION);
+    private final ToggleAnimationHelper toggleAnimationHelper = new ToggleAnimationHelper(this, animationClock, TOGGLE_ANIMATION_DURATION);
 
     private UiChart uiChart;
     private List<Graph> graphs;
-
-    private final Map<String, ValueAnimator> hideAnimators = new HashMap<>();
-    private final Map<String, ValueAnimator> showAnimators = new HashMap<>();
+    private final PointsBufferPool pointsBufferPool = new PointsBufferPool();
 
     private final Matrix transformMatrix = new Matrix();
     private float xOffs;
@@ -83,6 +87,13 @@ public class MiniChartView extends View implements ScaleAnimationHelper.Callback
     private float xScale;
     private float yScale;
 
+    // graphs are drawn into this layer only when they change, dragging of the window just draws it as is
+    private Bitmap graphsLayer;
+    private final Canvas graphsLayerCanvas = new Canvas();
+    private boolean graphsLayerDirty = true;
+    private float[] graphsLayerAlphas = new float[0];   // alphas and states of graphs drawn into the layer
+    private int[] graphsLayerStates = new int[0];
+
     public MiniChartView(Context context) {
         super(context);
         init(context, null, 0);
@@ -127,6 +138,27 @@ public class MiniChartView extends View implements ScaleAnimationHelper.Callback
 
         touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
         dragSize = 1.5f * touchSlop;
+
+        ComputeScheduler computeScheduler = ((ChartsApp) context.getApplicationContext()).getAppComponent().getComputeScheduler();
+        scaleAnimationHelper = new ScaleAnimationHelper(this, computeScheduler, animationClock, TOGGLE_ANIMATION_DURATION);
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        if (visibility == VISIBLE) {
+            animationClock.resume();
+        } else {
+            animationClock.pause();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        scaleAnimationHelper.cancel();
+        animationClock.pause();
+        releaseGraphsLayer();
     }
 
     @Override
@@ -155,14 +187,16 @@ public class MiniChartView extends View implements ScaleAnimationHelper.Callback
         // draw Chart data
         List<Graph> graphs = this.graphs;
         if (graphs != null) {
-            canvas.save();
-            canvas.clipRect(0f, 0f, width, height);
-            for (Graph graph : graphs) {
-                if (graph.state != Graph.STATE_HIDDEN) {
-                    graph.draw(canvas);
-                }
+            if (graphsLayer == null || graphsLayer.getWidth() != width || graphsLayer.getHeight() != height) {
+                releaseGraphsLayer();
+                graphsLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                graphsLayerCanvas.setBitmap(graphsLayer);
+                graphsLayerDirty = true;
             }
-            canvas.restore();
+            if (graphsLayerDirty || isGraphsLayerChanged(graphs)) {
+                drawGraphsLayer(graphs);
+            }
+            canvas.drawBitmap(graphsLayer, 0f, 0f, null);
         }
 
         // fade out off-window regions
@@ -198,6 +232,42 @@ public class MiniChartView extends View implements ScaleAnimationHelper.Callback
         }
     }
 
+    private boolean isGraphsLayerChanged(List<Graph> graphs) {
+        int count = graphs.size();
+        if (graphsLayerAlphas.length != count) return true;
+        for (int i = 0; i < count; i++) {
+            Graph graph = graphs.get(i);
+            if (graph.alpha != graphsLayerAlphas[i] || graph.state != graphsLayerStates[i]) return true;
+        }
+        return false;
+    }
+
+    private void drawGraphsLayer(List<Graph> graphs) {
+        int count = graphs.size();
+        if (graphsLayerAlphas.length != count) {
+            graphsLayerAlphas = new float[count];
+            graphsLayerStates = new int[count];
+        }
+        graphsLayer.eraseColor(Color.TRANSPARENT);
+        for (int i = 0; i < count; i++) {
+            Graph graph = graphs.get(i);
+            if (graph.state != Graph.STATE_HIDDEN) {
+                graph.draw(graphsLayerCanvas);
+            }
+            graphsLayerAlphas[i] = graph.alpha;
+            graphsLayerStates[i] = graph.state;
+        }
+        graphsLayerDirty = false;
+    }
+
+    private void releaseGraphsLayer() {
+        if (graphsLayer != null) {
+            graphsLayerCanvas.setBitmap(null);
+            graphsLayer.recycle();
+            graphsLayer = null;
+        }
+    }
+
     @Override
     @SuppressLint("ClickableViewAccessibility")
     public boolean onTouchEvent(MotionEvent event) {
@@ -304,49 +374,31 @@ public class MiniChartView extends View implements ScaleAnimationHelper.Callback
             invalidate();
 
             if (notifyListener && attachedChartView != null) {
-                attachedChartView.setRange(start, end, true);
+                attachedChartView.requestRange(start, end);
             }
         }
     }
 
     private void showTouchRippleAnimation() {
-        if (touchRippleAnimation != null) {
-            touchRippleAnimation.cancel();
-        }
-        touchRippleAnimation = createTouchRippleAnimation(0f, 1f);
-        touchRippleAnimation.start();
+        animationClock.start(touchRippleTween, 0f, 1f, TOUCH_RIPPLE_ANIMATION_DURATION, AnimationClock.INTERPOLATOR_DECELERATE);
     }
 
     private void hideTouchRippleAnimation() {
-        float currentValue = touchRippleAnimation != null ? (float) ((ValueAnimator) touchRippleAnimation).getAnimatedValue() : 1f;
-        if (touchRippleAnimation != null) {
-            touchRippleAnimation.cancel();
-        }
-        touchRippleAnimation = createTouchRippleAnimation(currentValue, 0f);
-        touchRippleAnimation.start();
+        animationClock.start(touchRippleTween, touchRippleValue, 0f, TOUCH_RIPPLE_ANIMATION_DURATION, AnimationClock.INTERPOLATOR_DECELERATE);
     }
 
-    private Animator createTouchRippleAnimation(float from, float to) {
-        ValueAnimator anim = ValueAnimator.ofFloat(from, to);
-        anim.setDuration(200);
-        anim.setInterpolator(new DecelerateInterpolator());
-        anim.addUpdateListener(animation -> {
-            float value = (float) animation.getAnimatedValue();
-            touchRippleRadius = value * (0.7f * getHeight());
-            touchRippleAlpha = value;
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                postInvalidateOnAnimation();
-            } else {
-                postInvalidate();
-            }
-        });
-        return anim;
+    @Override
+    public void onTweenUpdate(int tween, float value, boolean finished) {
+        touchRippleValue = value;
+        touchRippleRadius = value * (0.7f * getHeight());
+        touchRippleAlpha = value;
     }
 
     // ================
 
     @Override
     public void onSizeChanged(int w, int h, int oldw, int oldh) {
+        graphsLayerDirty = true;
         enqueueUpdateData();
     }
 
@@ -389,12 +441,28 @@ public class MiniChartView extends View implements ScaleAnimationHelper.Callback
         xOffs = (viewWidth - uiChart.width * xScale) / 2f;
         yOffs = getHeight() * 0.925f;
 
+        List<Graph> oldGraphs = this.graphs;
+        if (oldGraphs != null) {
+            for (Graph graph : oldGraphs) {
+                graph.release();
+            }
+        }
+
+        // whole chart is always shown, so every line is decimated once to at most 4 points per pixel column
+        int columnsCount = (int) Math.ceil(viewWidth);
+        boolean decimate = columnsCount > 0 && uiChart.width > 0;
+
         List<Graph> newGraphs = new ArrayList<>();
-        for (Graph g : uiChart.graphs) {
-            newGraphs.add(new Graph(g, chartLineWidth));
+        for (GraphGeometry geometry : uiChart.graphs) {
+            Graph graph = new Graph(geometry, chartLineWidth, pointsBufferPool);
+            if (decimate) {
+                graph.decimate(-xOffs / xScale, 1f / xScale, columnsCount);
+            }
+            newGraphs.add(graph);
         }
 
         this.graphs = newGraphs;
+        graphsLayerDirty = true;
 
         scaleAnimationHelper.calculate(false);
     }
@@ -413,11 +481,6 @@ public class MiniChartView extends View implements ScaleAnimationHelper.Callback
         scaleAnimationHelper.calculate(true);
     }
 
-    @Override
-    public void onGraphUpdated() {
-        invalidate();
-    }
-
     private void updateHiddenGraphs(Set<String> ids) {
         List<Graph> graphs = this.graphs;
         for (Graph graph : graphs) {
@@ -431,14 +494,7 @@ public class MiniChartView extends View implements ScaleAnimationHelper.Callback
             scaleAnimationHelper.calculate(false);
         }
 
-        for (ValueAnimator anim : hideAnimators.values()) {
-            if (anim.isRunning()) anim.cancel();
-        }
-        hideAnimators.clear();
-        for (ValueAnimator anim : showAnimators.values()) {
-            if (anim.isRunning()) anim.cancel();
-        }
-        showAnimators.clear();
+        toggleAnimationHelper.cancel();
 
         invalidate();
     }
@@ -446,15 +502,23 @@ public class MiniChartView extends View implements ScaleAnimationHelper.Callback
     // ===============
 
     @Override
-    public ScaleAnimationHelper.CalcResult calculateNewScale() {
+    public void calculateNewScale(ScaleAnimationHelper.CalcResult result) {
+        List<Graph> graphs = this.graphs;
         float maxHeight = 0f;
-        for (Graph graph : graphs) {
-            float max = graph.findMaxYInRange(0f, uiChart.width);
+        for (int i = 0; i < graphs.size(); i++) {
+            float max = graphs.get(i).findMaxY();
             if (max > maxHeight) maxHeight = max;
         }
 
         float scale = 0.85f * getHeight() / maxHeight;
-        return new ScaleAnimationHelper.CalcResult(scale, maxHeight);
+        result.set(scale, maxHeight);
+    }
+
+    @Override
+    public int getCalculationSize() {
+        // max of every graph is found on decimation
+        List<Graph> graphs = this.graphs;
+        return graphs != null ? graphs.size() : 0;
     }
 
     @Override
@@ -473,8 +537,9 @@ public class MiniChartView extends View implements ScaleAnimationHelper.Callback
         for (Graph graph : this.graphs) {
             graph.transform(transformMatrix);
         }
+        graphsLayerDirty = true;
 
-        postInvalidate();
+        invalidate();
     }
 
     // ===============
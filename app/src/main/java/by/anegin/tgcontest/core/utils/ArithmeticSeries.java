@@ -0,0 +1,86 @@
+package by.anegin.tgcontest.core.utils;
+
+/**
+ * Evenly spaced ascending values, value i is start + i * step.
+ * <p>
+ * Values are not stored, so access and search are O(1).
+ */
+public class ArithmeticSeries implements LongSeries {
+
+    private final long start;
+    private final long step;
+    private final int size;
+
+    /**
+     * @param step positive
+     */
+    public ArithmeticSeries(long start, long step, int size) {
+        this.start = start;
+        this.step = step;
+        this.size = size;
+    }
+
+    /**
+     * Series of values if they are evenly spaced and ascending, null otherwise
+     */
+    public static ArithmeticSeries detect(long[] values) {
+        if (values.length < 2) return null;
+        long step = values[1] - values[0];
+        if (step <= 0) return null;
+        for (int i = 2; i < values.length; i++) {
+            if (values[i] - values[i - 1] != step) return null;
+        }
+        return new ArithmeticSeries(values[0], step, values.length);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long get(int index) {
+        return start + index * step;
+    }
+
+    @Override
+    public void decodeFloats(int from, int count, float[] out, int outOffset, int stride) {
+        long value = start + from * step;
+        int outIndex = outOffset;
+        for (int i = 0; i < count; i++) {
+            out[outIndex] = value;
+            value += step;
+            outIndex += stride;
+        }
+    }
+
+    @Override
+    public int lowerBound(float x) {
+        int index = estimateIndex(x);
+        // fix rounding of the estimate, comparisons are the same as for stored values
+        while (index > 0 && get(index - 1) >= x) index--;
+        while (index < size && get(index) < x) index++;
+        return index;
+    }
+
+    @Override
+    public int upperBound(float x) {
+        int index = estimateIndex(x);
+        while (index > 0 && get(index - 1) > x) index--;
+        while (index < size && get(index) <= x) index++;
+        return index;
+    }
+
+    @Override
+    public long getByteCount() {
+        return 0;
+    }
+
+    private int estimateIndex(float x) {
+        double index = Math.ceil((x - (double) start) / step);
+        if (index <= 0) return 0;
+        if (index >= size) return size;
+        return (int) index;
+    }
+
+}
@@ -0,0 +1,381 @@
+package by.anegin.tgcontest.core.utils;
+
+import java.util.Arrays;
+
+/**
+ * Immutable series of long values compressed in blocks of {@link #BLOCK_SIZE} values.
+ * <p>
+ * Timestamps are encoded as delta-of-delta, so evenly spaced ones take one bit per value.
+ * Other values are encoded as XOR with the previous value (as in Facebook Gorilla),
+ * slowly changing values take a few bits per value.
+ * <p>
+ * Every block starts from its first value kept as is and has min and max of its values, so random access
+ * and range queries decode only the blocks they touch. Blocks are decoded into a buffer of the calling thread,
+ * so series may be read from any thread.
+ */
+public class CompressedSeries implements LongSeries {
+
+    public static final int BLOCK_SIZE = 128;
+
+    private static final int ENCODING_DELTA_OF_DELTA = 1;
+    private static final int ENCODING_XOR = 2;
+
+    private static final ThreadLocal<long[]> BLOCK_BUFFER = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[BLOCK_SIZE];
+        }
+    };
+
+    private final int encoding;
+    private final int size;
+
+    private final long[] bits;          // MSB first
+    private final int[] blockOffsets;   // bit offset of the second value of every block
+    private final long[] blockFirsts;
+    private final long[] blockMins;
+    private final long[] blockMaxs;
+
+    /**
+     * For ascending values with mostly equal gaps between them
+     */
+    public static CompressedSeries encodeTimestamps(long[] values) {
+        return new CompressedSeries(values, ENCODING_DELTA_OF_DELTA);
+    }
+
+    /**
+     * For values which change slowly or repeat
+     */
+    public static CompressedSeries encodeValues(long[] values) {
+        return new CompressedSeries(values, ENCODING_XOR);
+    }
+
+    private CompressedSeries(long[] values, int encoding) {
+        this.encoding = encoding;
+        this.size = values.length;
+
+        int blocksCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blockOffsets = new int[blocksCount];
+        blockFirsts = new long[blocksCount];
+        blockMins = new long[blocksCount];
+        blockMaxs = new long[blocksCount];
+
+        BitWriter writer = new BitWriter(size);
+        for (int b = 0; b < blocksCount; b++) {
+            int start = b * BLOCK_SIZE;
+            int end = Math.min(size, start + BLOCK_SIZE);
+
+            long min = values[start];
+            long max = values[start];
+            for (int i = start + 1; i < end; i++) {
+                if (values[i] < min) min = values[i];
+                if (values[i] > max) max = values[i];
+            }
+            blockFirsts[b] = values[start];
+            blockMins[b] = min;
+            blockMaxs[b] = max;
+            blockOffsets[b] = writer.bitsCount;
+
+            if (encoding == ENCODING_DELTA_OF_DELTA) {
+                writeDeltaOfDeltas(writer, values, start, end);
+            } else {
+                writeXors(writer, values, start, end);
+            }
+        }
+        bits = writer.toArray();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long get(int index) {
+        int block = index / BLOCK_SIZE;
+        long[] buffer = BLOCK_BUFFER.get();
+        decodeBlock(block, index - block * BLOCK_SIZE + 1, buffer);
+        return buffer[index - block * BLOCK_SIZE];
+    }
+
+    /**
+     * Decodes values [from, from + count) into out
+     */
+    public void decode(int from, int count, long[] out, int outOffset) {
+        long[] buffer = BLOCK_BUFFER.get();
+        int to = from + count;
+        for (int block = from / BLOCK_SIZE; block * BLOCK_SIZE < to; block++) {
+            int blockStart = block * BLOCK_SIZE;
+            int start = Math.max(from, blockStart);
+            int end = Math.min(to, blockStart + BLOCK_SIZE);
+            decodeBlock(block, end - blockStart, buffer);
+            System.arraycopy(buffer, start - blockStart, out, outOffset + start - from, end - start);
+        }
+    }
+
+    @Override
+    public void decodeFloats(int from, int count, float[] out, int outOffset, int stride) {
+        long[] buffer = BLOCK_BUFFER.get();
+        int to = from + count;
+        for (int block = from / BLOCK_SIZE; block * BLOCK_SIZE < to; block++) {
+            int blockStart = block * BLOCK_SIZE;
+            int start = Math.max(from, blockStart);
+            int end = Math.min(to, blockStart + BLOCK_SIZE);
+            decodeBlock(block, end - blockStart, buffer);
+            int outIndex = outOffset + stride * (start - from);
+            for (int i = start; i < end; i++) {
+                out[outIndex] = buffer[i - blockStart];
+                outIndex += stride;
+            }
+        }
+    }
+
+    public long[] toArray() {
+        long[] values = new long[size];
+        decode(0, size, values, 0);
+        return values;
+    }
+
+    /**
+     * Min of values with indices in [from, to], only the first and the last blocks of the range are decoded
+     */
+    public long findMin(int from, int to) {
+        long min = Long.MAX_VALUE;
+        long[] buffer = BLOCK_BUFFER.get();
+        for (int block = from / BLOCK_SIZE; block * BLOCK_SIZE <= to; block++) {
+            int blockStart = block * BLOCK_SIZE;
+            int start = Math.max(from, blockStart);
+            int end = Math.min(to + 1, blockStart + BLOCK_SIZE);
+            if (start == blockStart && end == Math.min(size, blockStart + BLOCK_SIZE)) {
+                min = Math.min(min, blockMins[block]);
+            } else {
+                decodeBlock(block, end - blockStart, buffer);
+                for (int i = start; i < end; i++) {
+                    min = Math.min(min, buffer[i - blockStart]);
+                }
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Max of values with indices in [from, to], only the first and the last blocks of the range are decoded
+     */
+    public long findMax(int from, int to) {
+        long max = Long.MIN_VALUE;
+        long[] buffer = BLOCK_BUFFER.get();
+        for (int block = from / BLOCK_SIZE; block * BLOCK_SIZE <= to; block++) {
+            int blockStart = block * BLOCK_SIZE;
+            int start = Math.max(from, blockStart);
+            int end = Math.min(to + 1, blockStart + BLOCK_SIZE);
+            if (start == blockStart && end == Math.min(size, blockStart + BLOCK_SIZE)) {
+                max = Math.max(max, blockMaxs[block]);
+            } else {
+                decodeBlock(block, end - blockStart, buffer);
+                for (int i = start; i < end; i++) {
+                    max = Math.max(max, buffer[i - blockStart]);
+                }
+            }
+        }
+        return max;
+    }
+
+    public int getBlocksCount() {
+        return blockFirsts.length;
+    }
+
+    public long getBlockMin(int block) {
+        return blockMins[block];
+    }
+
+    public long getBlockMax(int block) {
+        return blockMaxs[block];
+    }
+
+    @Override
+    public int lowerBound(float x) {
+        return search(x, false);
+    }
+
+    @Override
+    public int upperBound(float x) {
+        return search(x, true);
+    }
+
+    @Override
+    public long getByteCount() {
+        return 8L * bits.length + (4L + 8L + 8L + 8L) * blockFirsts.length;
+    }
+
+    private int search(float x, boolean upper) {
+        // last block starting before the searched value, only it is decoded
+        int lo = 0;
+        int hi = blockFirsts.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (upper ? blockFirsts[mid] <= x : blockFirsts[mid] < x) lo = mid + 1;
+            else hi = mid;
+        }
+        if (lo == 0) return 0;
+
+        int block = lo - 1;
+        int blockStart = block * BLOCK_SIZE;
+        int count = Math.min(size - blockStart, BLOCK_SIZE);
+        long[] buffer = BLOCK_BUFFER.get();
+        decodeBlock(block, count, buffer);
+        for (int i = 1; i < count; i++) {
+            if (upper ? buffer[i] > x : buffer[i] >= x) return blockStart + i;
+        }
+        return blockStart + count;
+    }
+
+    /**
+     * Decodes the first count values of the block into buffer
+     */
+    private void decodeBlock(int block, int count, long[] buffer) {
+        long value = blockFirsts[block];
+        buffer[0] = value;
+        int position = blockOffsets[block];
+        if (encoding == ENCODING_DELTA_OF_DELTA) {
+            long delta = 0;
+            for (int i = 1; i < count; i++) {
+                // count of ones in prefix, prefix of the last bucket has no terminating zero
+                int bucket = 0;
+                while (bucket < DOD_BUCKET_BITS.length && readBits(bits, position++, 1) == 1) {
+                    bucket++;
+                }
+                if (bucket > 0) {
+                    int bitsCount = DOD_BUCKET_BITS[bucket - 1];
+                    long zigZag = readBits(bits, position, bitsCount);
+                    position += bitsCount;
+                    delta += (zigZag >>> 1) ^ -(zigZag & 1);
+                }
+                value += delta;
+                buffer[i] = value;
+            }
+        } else {
+            int leadingZeros = 0;
+            int meaningfulBits = 0;
+            for (int i = 1; i < count; i++) {
+                if (readBits(bits, position++, 1) == 1) {
+                    if (readBits(bits, position++, 1) == 1) {
+                        leadingZeros = (int) readBits(bits, position, 6);
+                        meaningfulBits = (int) readBits(bits, position + 6, 6) + 1;
+                        position += 12;
+                    }
+                    long xor = readBits(bits, position, meaningfulBits);
+                    position += meaningfulBits;
+                    value ^= xor << (64 - leadingZeros - meaningfulBits);
+                }
+                buffer[i] = value;
+            }
+        }
+    }
+
+    // ================
+
+    // sizes of zigzag encoded delta-of-delta after prefixes 10, 110, 1110, 11110 and 11111; prefix 0 is zero
+    private static final int[] DOD_BUCKET_BITS = {7, 9, 12, 32, 64};
+
+    private static void writeDeltaOfDeltas(BitWriter writer, long[] values, int start, int end) {
+        long prevDelta = 0;
+        for (int i = start + 1; i < end; i++) {
+            long delta = values[i] - values[i - 1];
+            long deltaOfDelta = delta - prevDelta;
+            prevDelta = delta;
+
+            long zigZag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+            if (zigZag == 0) {
+                writer.write(0, 1);
+                continue;
+            }
+            int bucket = 0;
+            while (bucket < DOD_BUCKET_BITS.length - 1 && (zigZag >>> DOD_BUCKET_BITS[bucket]) != 0) {
+                bucket++;
+            }
+            // bucket + 1 ones, terminated by zero unless it is the last bucket
+            int prefixLength = bucket + 1 < DOD_BUCKET_BITS.length ? bucket + 2 : bucket + 1;
+            long prefix = bucket + 1 < DOD_BUCKET_BITS.length ? ((1L << (bucket + 1)) - 1) << 1 : (1L << (bucket + 1)) - 1;
+            writer.write(prefix, prefixLength);
+            writer.write(zigZag, DOD_BUCKET_BITS[bucket]);
+        }
+    }
+
+    private static void writeXors(BitWriter writer, long[] values, int start, int end) {
+        int prevLeadingZeros = -1;
+        int prevTrailingZeros = 0;
+        for (int i = start + 1; i < end; i++) {
+            long xor = values[i] ^ values[i - 1];
+            if (xor == 0) {
+                writer.write(0, 1);
+                continue;
+            }
+            int leadingZeros = Long.numberOfLeadingZeros(xor);
+            int trailingZeros = Long.numberOfTrailingZeros(xor);
+            if (prevLeadingZeros != -1 && leadingZeros >= prevLeadingZeros && trailingZeros >= prevTrailingZeros) {
+                // meaningful bits fit into the window of the previous value
+                int meaningfulBits = 64 - prevLeadingZeros - prevTrailingZeros;
+                writer.write(0b10, 2);
+                writer.write(xor >>> prevTrailingZeros, meaningfulBits);
+            } else {
+                int meaningfulBits = 64 - leadingZeros - trailingZeros;
+                writer.write(0b11, 2);
+                writer.write(leadingZeros, 6);
+                writer.write(meaningfulBits - 1, 6);
+                writer.write(xor >>> trailingZeros, meaningfulBits);
+                prevLeadingZeros = leadingZeros;
+                prevTrailingZeros = trailingZeros;
+            }
+        }
+    }
+
+    /**
+     * @param count 1..64
+     */
+    private static long readBits(long[] bits, int position, int count) {
+        int word = position >>> 6;
+        int bit = position & 63;
+        long value = bits[word] << bit;
+        if (bit + count > 64) {
+            value |= bits[word + 1] >>> (64 - bit);
+        }
+        return value >>> (64 - count);
+    }
+
+    private static class BitWriter {
+
+        private long[] words;
+        private int bitsCount = 0;
+
+        private BitWriter(int valuesCount) {
+            // about a bit per value for regular data
+            words = new long[Math.max(1, valuesCount / 64 + 1)];
+        }
+
+        /**
+         * Writes low count (1..64) bits of value
+         */
+        private void write(long value, int count) {
+            if (bitsCount + count > 64L * words.length) {
+                words = Arrays.copyOf(words, Math.max(2 * words.length, (bitsCount + count) / 64 + 1));
+            }
+            if (count < 64) {
+                value &= (1L << count) - 1;
+            }
+            int word = bitsCount >>> 6;
+            int free = 64 - (bitsCount & 63);
+            if (count <= free) {
+                words[word] |= value << (free - count);
+            } else {
+                words[word] |= value >>> (count - free);
+                words[word + 1] |= value << (64 - (count - free));
+            }
+            bitsCount += count;
+        }
+
+        private long[] toArray() {
+            return Arrays.copyOf(words, (bitsCount + 63) / 64);
+        }
+    }
+
+}
@@ -0,0 +1,195 @@
+package by.anegin.tgcontest.core.utils;
+
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * App-wide pool for background calculations, sized to the number of cores.
+ * <p>
+ * Jobs submitted with the same key are coalesced: not yet started job is replaced by the new one,
+ * so only the latest calculation for the key is executed. Jobs of the same key never run at the same time,
+ * so their results are produced in order of submission. Idle threads are stopped after a timeout.
+ */
+public class ComputeScheduler {
+
+    /**
+     * Jobs working with not more values than this are executed on the calling thread,
+     * thread hop costs more than the job itself
+     */
+    public static final int INLINE_MAX_SIZE = 2048;
+
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private final ThreadPoolExecutor executor;
+
+    // jobs of every key are executed one at a time, guarded by itself.
+    // There are only a few keys, so they are compared by identity in a list, and entries of idle keys are reused,
+    // so jobs submitted on every frame don't allocate
+    private final List<KeyedJob> keyedJobs = new ArrayList<>();
+    private final List<KeyedJob> idleKeyedJobs = new ArrayList<>();
+
+    public ComputeScheduler() {
+        // one core is left for UI and render threads
+        int threadsCount = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        executor = new ThreadPoolExecutor(threadsCount, threadsCount,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new ComputeThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public void execute(Runnable job) {
+        executor.execute(job);
+    }
+
+    /**
+     * Executes job in background, replacing not yet started job with the same key.
+     * If job with the same key is running, the new one is started after it.
+     */
+    public void submitLatest(Object key, Runnable job) {
+        synchronized (keyedJobs) {
+            KeyedJob keyedJob = obtainKeyedJob(key);
+            keyedJob.pending = job;
+            keyedJob.enqueue();
+        }
+    }
+
+    /**
+     * Same as {@link #submitLatest(Object, Runnable)}, but job working with not more than
+     * {@link #INLINE_MAX_SIZE} values is executed immediately on the calling thread,
+     * unless job with the same key is running
+     */
+    public void submitLatest(Object key, int size, Runnable job) {
+        if (size > INLINE_MAX_SIZE) {
+            submitLatest(key, job);
+            return;
+        }
+        KeyedJob keyedJob;
+        synchronized (keyedJobs) {
+            keyedJob = obtainKeyedJob(key);
+            if (keyedJob.running) {
+                keyedJob.pending = job;
+                return;
+            }
+            // not yet started job is replaced by this one
+            keyedJob.pending = null;
+            keyedJob.running = true;
+        }
+        keyedJob.runJob(job);
+    }
+
+    /**
+     * Cancels not yet started job with given key, running job is not interrupted
+     */
+    public void cancel(Object key) {
+        synchronized (keyedJobs) {
+            KeyedJob keyedJob = findKeyedJob(key);
+            if (keyedJob != null) {
+                keyedJob.pending = null;
+                keyedJob.removeIfIdle();
+            }
+        }
+    }
+
+    // must be called with keyedJobs lock held
+    private KeyedJob obtainKeyedJob(Object key) {
+        KeyedJob keyedJob = findKeyedJob(key);
+        if (keyedJob == null) {
+            int size = idleKeyedJobs.size();
+            keyedJob = size > 0 ? idleKeyedJobs.remove(size - 1) : new KeyedJob();
+            keyedJob.key = key;
+            keyedJobs.add(keyedJob);
+        }
+        return keyedJob;
+    }
+
+    // must be called with keyedJobs lock held
+    private KeyedJob findKeyedJob(Object key) {
+        for (int i = 0; i < keyedJobs.size(); i++) {
+            KeyedJob keyedJob = keyedJobs.get(i);
+            if (keyedJob.key == key) return keyedJob;
+        }
+        return null;
+    }
+
+    /**
+     * Latest job of the key, fields are guarded by keyedJobs
+     */
+    private class KeyedJob implements Runnable {
+
+        private Object key;             // null if this is idle
+        private Runnable pending;       // not yet started job
+        private boolean running;        // job is running in background or on the calling thread
+        private boolean queued;         // this is in executor queue
+
+        @Override
+        public void run() {
+            Runnable job;
+            synchronized (keyedJobs) {
+                queued = false;
+                if (running || pending == null) {
+                    // running job enqueues the pending one when it is finished
+                    removeIfIdle();
+                    return;
+                }
+                job = pending;
+                pending = null;
+                running = true;
+            }
+            runJob(job);
+        }
+
+        private void runJob(Runnable job) {
+            try {
+                job.run();
+            } finally {
+                synchronized (keyedJobs) {
+                    running = false;
+                    if (pending != null) {
+                        enqueue();
+                    } else {
+                        removeIfIdle();
+                    }
+                }
+            }
+        }
+
+        // must be called with keyedJobs lock held
+        private void enqueue() {
+            if (running || queued) return;
+            queued = true;
+            executor.execute(this);
+        }
+
+        // must be called with keyedJobs lock held
+        private void removeIfIdle() {
+            if (!running && !queued && pending == null && key != null) {
+                keyedJobs.remove(this);
+                key = null;
+                idleKeyedJobs.add(this);
+            }
+        }
+    }
+
+    private static class ComputeThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "Compute-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
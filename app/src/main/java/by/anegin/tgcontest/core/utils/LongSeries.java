@@ -0,0 +1,32 @@
+package by.anegin.tgcontest.core.utils;
+
+/**
+ * Read-only series of long values which are not necessarily stored as an array
+ */
+public interface LongSeries {
+
+    int size();
+
+    long get(int index);
+
+    /**
+     * Decodes values [from, from + count) into out as floats, value i is put at outOffset + stride * (i - from)
+     */
+    void decodeFloats(int from, int count, float[] out, int outOffset, int stride);
+
+    /**
+     * Index of the first value not less than x in ascending series, or size if there is no such value
+     */
+    int lowerBound(float x);
+
+    /**
+     * Index of the first value greater than x in ascending series, or size if there is no such value
+     */
+    int upperBound(float x);
+
+    /**
+     * Approximate memory used by the series
+     */
+    long getByteCount();
+
+}
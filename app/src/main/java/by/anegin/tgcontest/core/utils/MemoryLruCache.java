@@ -0,0 +1,92 @@
+package by.anegin.tgcontest.core.utils;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe LRU cache bounded by estimated byte size of values.
+ * <p>
+ * Least recently used values are evicted when total size exceeds the budget,
+ * but the last added value is always kept, even if it doesn't fit into the budget alone.
+ */
+public class MemoryLruCache<K, V> {
+
+    public interface Sizer<V> {
+        /**
+         * Estimated number of bytes held by the value, it must not change while value is cached
+         */
+        long getByteCount(V value);
+    }
+
+    private final long maxSize;
+    private final Sizer<V> sizer;
+
+    // access order, the eldest is the least recently used
+    private final LinkedHashMap<K, V> map = new LinkedHashMap<>(8, 0.75f, true);
+    private final Map<K, Long> sizes = new HashMap<>();
+    private long size = 0;
+
+    public MemoryLruCache(long maxSize, Sizer<V> sizer) {
+        this.maxSize = maxSize;
+        this.sizer = sizer;
+    }
+
+    public synchronized V get(K key) {
+        return map.get(key);
+    }
+
+    /**
+     * Checks value presence without changing its position in LRU order
+     */
+    public synchronized boolean contains(K key) {
+        return map.containsKey(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        remove(key);
+        long valueSize = sizer.getByteCount(value);
+        map.put(key, value);
+        sizes.put(key, valueSize);
+        size += valueSize;
+        trimTo(maxSize, 1);
+    }
+
+    public synchronized void remove(K key) {
+        if (map.remove(key) != null) {
+            size -= sizes.remove(key);
+        }
+    }
+
+    /**
+     * Evicts least recently used values until total size is not more than given fraction of the budget
+     */
+    public synchronized void trimToFraction(float fraction) {
+        trimTo((long) (maxSize * fraction), 0);
+    }
+
+    public synchronized void evictAll() {
+        map.clear();
+        sizes.clear();
+        size = 0;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    private void trimTo(long targetSize, int minCount) {
+        Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+        while (size > targetSize && map.size() > minCount && iterator.hasNext()) {
+            K key = iterator.next().getKey();
+            iterator.remove();
+            size -= sizes.remove(key);
+        }
+    }
+
+}
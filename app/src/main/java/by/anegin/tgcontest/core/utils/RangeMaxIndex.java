@@ -0,0 +1,95 @@
+package by.anegin.tgcontest.core.utils;
+
+/**
+ * Precomputed index answering "max value between x1 and x2" queries over series with ascending x values.
+ * <p>
+ * Maximums of blocks of {@link CompressedSeries} are kept in a sparse table,
+ * so query costs two binary searches, one table lookup and decoding of at most two partial blocks.
+ */
+public class RangeMaxIndex {
+
+    private static final int BLOCK_SIZE = CompressedSeries.BLOCK_SIZE;
+
+    private final LongSeries x;
+    private final CompressedSeries values;
+    private final int count;
+
+    // blockMax[k][b] = max of blocks b..b+2^k-1
+    private final long[][] blockMax;
+
+    public RangeMaxIndex(LongSeries x, CompressedSeries values) {
+        this.x = x;
+        this.values = values;
+        this.count = Math.min(x.size(), values.size());
+
+        int blocksCount = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int levels = 1;
+        while ((1 << levels) <= blocksCount) levels++;
+
+        blockMax = new long[levels][];
+        blockMax[0] = new long[blocksCount];
+        for (int b = 0; b < blocksCount; b++) {
+            blockMax[0][b] = values.getBlockMax(b);
+        }
+        for (int k = 1; k < levels; k++) {
+            int span = 1 << (k - 1);
+            long[] prev = blockMax[k - 1];
+            long[] level = new long[blocksCount - (1 << k) + 1];
+            for (int b = 0; b < level.length; b++) {
+                level[b] = Math.max(prev[b], prev[b + span]);
+            }
+            blockMax[k] = level;
+        }
+    }
+
+    /**
+     * Approximate memory used by block maximums, series are not counted as they are shared
+     */
+    public long getByteCount() {
+        long byteCount = 0;
+        for (long[] level : blockMax) {
+            byteCount += 8L * level.length;
+        }
+        return byteCount;
+    }
+
+    /**
+     * Max of values of all segments (i, i + 1) which intersect [startX, endX]
+     *
+     * @return max value or {@link Float#NEGATIVE_INFINITY} if there are no such segments
+     */
+    public float findMaxInRange(float startX, float endX) {
+        if (count < 2) return Float.NEGATIVE_INFINITY;
+
+        int firstSegment = Math.max(0, x.lowerBound(startX) - 1);
+        int lastSegment = Math.min(count - 2, x.upperBound(endX) - 1);
+        if (firstSegment > lastSegment) return Float.NEGATIVE_INFINITY;
+        return findMax(firstSegment, lastSegment + 1);
+    }
+
+    /**
+     * Max of values with indices in [from, to]
+     */
+    public float findMax(int from, int to) {
+        if (from > to) return Float.NEGATIVE_INFINITY;
+
+        int fromBlock = from / BLOCK_SIZE;
+        int toBlock = to / BLOCK_SIZE;
+        if (toBlock - fromBlock < 2) {
+            return values.findMax(from, to);
+        }
+
+        long max = Math.max(
+                values.findMax(from, (fromBlock + 1) * BLOCK_SIZE - 1),
+                values.findMax(toBlock * BLOCK_SIZE, to));
+
+        // full blocks between
+        int firstBlock = fromBlock + 1;
+        int blocks = toBlock - firstBlock;
+        int k = 31 - Integer.numberOfLeadingZeros(blocks);
+        max = Math.max(max, blockMax[k][firstBlock]);
+        max = Math.max(max, blockMax[k][toBlock - (1 << k)]);
+        return max;
+    }
+
+}
@@ -1,25 +1,70 @@
 package by.anegin.tgcontest.data;
 
-import by.anegin.tgcontest.data.model.Data;
+import android.content.ComponentCallbacks2;
+import by.anegin.tgcontest.core.utils.MemoryLruCache;
+import by.anegin.tgcontest.data.model.Chart;
+import by.anegin.tgcontest.data.model.ChartInfo;
+import by.anegin.tgcontest.data.model.Column;
 import by.anegin.tgcontest.data.source.DataSource;
 
 import java.io.IOException;
+import java.util.List;
 
 public class DataRepository {
 
     private final DataSource dataSource;
 
-    private Data data;
+    private List<ChartInfo> chartInfos;
 
-    public DataRepository(DataSource dataSource) {
+    // decoded values of charts, they are cheap to decode again, so they are evicted first on memory pressure
+    private final MemoryLruCache<Integer, Chart> charts;
+
+    public DataRepository(DataSource dataSource, long chartsCacheSize) {
         this.dataSource = dataSource;
+        charts = new MemoryLruCache<>(chartsCacheSize, DataRepository::getByteCount);
+    }
+
+    /**
+     * @param listener notified about every chart as soon as it is read, if charts are read from the original source,
+     *                 may be null
+     * @see DataSource#getChartInfos(DataSource.OnChartLoadedListener)
+     */
+    public synchronized List<ChartInfo> getChartInfos(DataSource.OnChartLoadedListener listener) throws IOException {
+        if (chartInfos == null) {
+            chartInfos = dataSource.getChartInfos(listener);
+        }
+        return chartInfos;
+    }
+
+    public synchronized Chart getChart(int index) throws IOException {
+        getChartInfos(null);
+        if (index < 0 || index >= chartInfos.size()) return null;
+        Chart chart = charts.get(index);
+        if (chart == null) {
+            chart = dataSource.getChart(index);
+            if (chart != null) {
+                charts.put(index, chart);
+            }
+        }
+        return chart;
+    }
+
+    /**
+     * @param level one of {@link ComponentCallbacks2} TRIM_MEMORY_* levels
+     */
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            charts.evictAll();
+        }
     }
 
-    public Data getData() throws IOException {
-        if (data == null) {
-            data = dataSource.getData();
+    private static long getByteCount(Chart chart) {
+        // x values may be shared with other charts, but they are counted for every chart
+        long valuesCount = chart.x.size;
+        for (Column.Line line : chart.lines) {
+            valuesCount += line.size;
         }
-        return data;
+        return 8L * valuesCount;
     }
 
-}
\ No newline at end of file
+}
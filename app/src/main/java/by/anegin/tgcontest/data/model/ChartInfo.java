@@ -0,0 +1,40 @@
+package by.anegin.tgcontest.data.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chart metadata, available without decoding chart values
+ */
+public class ChartInfo {
+
+    public final int valuesCount;
+    public final List<Line> lines;
+
+    public ChartInfo(int valuesCount, List<Line> lines) {
+        this.valuesCount = valuesCount;
+        this.lines = lines;
+    }
+
+    public ChartInfo(Chart chart) {
+        this.valuesCount = chart.x.size;
+        this.lines = new ArrayList<>(chart.lines.size());
+        for (Column.Line line : chart.lines) {
+            lines.add(new Line(line.id, line.name, line.color));
+        }
+    }
+
+    public static final class Line {
+
+        public final String id;
+        public final String name;
+        public final int color;
+
+        public Line(String id, String name, int color) {
+            this.id = id;
+            this.name = name;
+            this.color = color;
+        }
+    }
+
+}
@@ -1,19 +1,40 @@
 package by.anegin.tgcontest.data.model;
 
+import java.util.Arrays;
+
 public class Column {
 
     public final String id;
+
+    // only values [0, size) belong to the column, array may be longer and shared with other columns, it is never modified
     public final long[] values;
+    public final int size;
 
-    private Column(String id, long[] values) {
+    private Column(String id, long[] values, int size) {
+        if (size > values.length) throw new IllegalArgumentException("Size " + size + " > " + values.length);
         this.id = id;
         this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Values of the column, copied only if the column is a part of longer array
+     */
+    public long[] toArray() {
+        return size == values.length ? values : Arrays.copyOf(values, size);
     }
 
     public static final class X extends Column {
 
         public X(String id, long[] values) {
-            super(id, values);
+            super(id, values, values.length);
+        }
+
+        /**
+         * Column of the first size values, array is not copied
+         */
+        public X(String id, long[] values, int size) {
+            super(id, values, size);
         }
 
     }
@@ -24,7 +45,7 @@ public class Column {
         public final int color;
 
         public Line(String id, String name, int color, long[] values) {
-            super(id, values);
+            super(id, values, values.length);
             this.name = name;
             this.color = color;
         }
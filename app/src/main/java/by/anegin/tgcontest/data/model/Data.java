@@ -1,13 +0,0 @@
-package by.anegin.tgcontest.data.model;
-
-import java.util.List;
-
-public class Data {
-
-    public final List<Chart> charts;
-
-    public Data(List<Chart> charts) {
-        this.charts = charts;
-    }
-
-}
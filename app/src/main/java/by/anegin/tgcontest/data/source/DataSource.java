@@ -1,11 +1,29 @@
 package by.anegin.tgcontest.data.source;
 
-import by.anegin.tgcontest.data.model.Data;
+import by.anegin.tgcontest.data.model.Chart;
+import by.anegin.tgcontest.data.model.ChartInfo;
 
 import java.io.IOException;
+import java.util.List;
 
 public interface DataSource {
 
-    Data getData() throws IOException;
+    interface OnChartLoadedListener {
+        void onChartLoaded(int index, Chart chart);
+    }
+
+    /**
+     * Lists available charts without decoding their values.
+     * If charts have to be read from the original source first, listener is notified about every chart
+     * as soon as it is read, so it can be shown before the rest of charts are read.
+     *
+     * @param listener may be null
+     */
+    List<ChartInfo> getChartInfos(OnChartLoadedListener listener) throws IOException;
+
+    /**
+     * Decodes values of the chart with given index
+     */
+    Chart getChart(int index) throws IOException;
 
 }
@@ -2,20 +2,27 @@ package by.anegin.tgcontest.data.source.impl;
 
 import android.content.Context;
 import android.graphics.Color;
+import android.util.JsonReader;
+import android.util.JsonToken;
 import by.anegin.tgcontest.data.model.Chart;
 import by.anegin.tgcontest.data.model.Column;
-import by.anegin.tgcontest.data.model.Data;
 import by.anegin.tgcontest.data.source.DataSource;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.io.*;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
 
-public class AssetsDataSource implements DataSource {
+/**
+ * Streaming parser of JSON charts data from assets
+ */
+public class AssetsDataSource {
+
+    private static final int INITIAL_COLUMN_CAPACITY = 256;
 
     private final Context context;
     private final String assetName;
@@ -25,106 +32,260 @@ public class AssetsDataSource implements DataSource {
         this.assetName = assetName;
     }
 
-    @Override
-    public Data getData() throws IOException {
-        String jsonString;
+    /**
+     * Reads all charts, passing every chart to listener as soon as it is read, charts are not kept after that
+     *
+     * @return number of charts
+     */
+    public int readCharts(DataSource.OnChartLoadedListener listener) throws IOException {
+        try (InputStream is = context.getAssets().open(assetName);
+             JsonReader reader = new JsonReader(new InputStreamReader(new BufferedInputStream(is), Charset.forName("UTF-8")))) {
+            return parseJson(reader, listener);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Reads raw asset bytes to identify its content without parsing
+     */
+    public Signature getSignature() throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
         try (InputStream is = context.getAssets().open(assetName)) {
-            Reader reader = new InputStreamReader(is, Charset.forName("UTF-8"));
-            Writer buffer = new StringWriter();
-            char[] buf = new char[8192];
-            int chars = reader.read(buf);
-            while (chars >= 0) {
-                buffer.write(buf, 0, chars);
-                chars = reader.read(buf);
+            byte[] buf = new byte[8192];
+            int bytes = is.read(buf);
+            while (bytes >= 0) {
+                crc.update(buf, 0, bytes);
+                size += bytes;
+                bytes = is.read(buf);
             }
-            jsonString = buffer.toString();
         }
-        try {
-            return parseJsonString(jsonString);
-        } catch (JSONException e) {
-            throw new IOException(e);
+        return new Signature(size, crc.getValue());
+    }
+
+    private int parseJson(JsonReader reader, DataSource.OnChartLoadedListener listener) throws IOException {
+        int chartsCount = 0;
+
+        // charts often share the same timeline, identical x columns are kept as one array, by hash of content
+        Map<Long, long[]> xArrays = new HashMap<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Chart chart = readChart(reader, xArrays);
+            if (chart != null) {
+                listener.onChartLoaded(chartsCount++, chart);
+            }
         }
+        reader.endArray();
+
+        return chartsCount;
     }
 
-    private Data parseJsonString(String jsonString) throws JSONException {
-        List<Chart> charts = new ArrayList<>();
-
-        JSONArray dataJson = new JSONArray(jsonString);
-        for (int i = 0; i < dataJson.length(); i++) {
-            JSONObject chartJson = dataJson.optJSONObject(i);
-            if (chartJson == null) continue;
-
-            JSONArray columnsJson = chartJson.optJSONArray("columns");
-            JSONObject typesJson = chartJson.optJSONObject("types");
-            JSONObject namesJson = chartJson.optJSONObject("names");
-            JSONObject colorsJson = chartJson.optJSONObject("colors");
-            if (columnsJson == null || typesJson == null
-                    || namesJson == null || colorsJson == null
-                    || columnsJson.length() == 0 || typesJson.length() == 0
-                    || namesJson.length() == 0 || colorsJson.length() == 0) continue;
-
-            int valuesCount = Integer.MAX_VALUE;
-            Column.X x = null;
-            List<Column.Line> lines = new ArrayList<>();
-            for (int j = 0; j < columnsJson.length(); j++) {
-
-                JSONArray columnJson = columnsJson.optJSONArray(j);
-                if (columnJson == null) continue;
-
-                String columnId = columnJson.optString(0);
-                String columnType = typesJson.optString(columnId);
-                if (columnId == null || columnType == null) continue;
-
-                long[] columnValues = new long[columnJson.length() - 1];
-                for (int v = 0; v < columnValues.length; v++) {
-                    columnValues[v] = columnJson.optLong(v + 1);
-                }
-                if (columnValues.length < valuesCount) {
-                    valuesCount = columnValues.length;
-                }
+    private Chart readChart(JsonReader reader, Map<Long, long[]> xArrays) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+
+        // "types", "names" and "colors" may follow "columns", so columns are kept raw until the chart object is closed
+        List<RawColumn> columns = new ArrayList<>();
+        Map<String, String> types = new HashMap<>();
+        Map<String, String> names = new HashMap<>();
+        Map<String, String> colors = new HashMap<>();
 
-                if ("x".equals(columnType)) {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "columns":
+                    readColumns(reader, columns);
+                    break;
+                case "types":
+                    readStringMap(reader, types);
+                    break;
+                case "names":
+                    readStringMap(reader, names);
+                    break;
+                case "colors":
+                    readStringMap(reader, colors);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (columns.isEmpty() || types.isEmpty() || names.isEmpty() || colors.isEmpty()) return null;
 
-                    x = new Column.X(columnId, columnValues);
+        int valuesCount = Integer.MAX_VALUE;
+        RawColumn rawX = null;
+        List<RawColumn> rawLines = new ArrayList<>();
+        for (RawColumn column : columns) {
+            String columnType = types.get(column.id);
+            if (columnType == null) continue;
 
-                } else if ("line".equals(columnType)) {
+            if (column.size < valuesCount) {
+                valuesCount = column.size;
+            }
 
-                    String columnName = namesJson.optString(columnId);
-                    if (columnName == null) columnName = "No name";
+            if ("x".equals(columnType)) {
+                rawX = column;
+            } else if ("line".equals(columnType)) {
+                rawLines.add(column);
+            }
+        }
 
-                    int columnColor;
-                    try {
-                        columnColor = Color.parseColor(colorsJson.optString(columnId));
-                    } catch (IllegalArgumentException e) {
-                        columnColor = Color.BLACK;
-                    }
+        if (valuesCount == 0 || rawX == null || rawLines.isEmpty()) return null;
 
-                    lines.add(new Column.Line(columnId, columnName, columnColor, columnValues));
-                }
+        // trimmed x column is a part of the whole shared array
+        Column.X x = new Column.X(rawX.id, internX(rawX, xArrays), valuesCount);
+
+        List<Column.Line> lines = new ArrayList<>(rawLines.size());
+        for (RawColumn rawLine : rawLines) {
+            String columnName = names.get(rawLine.id);
+            if (columnName == null) columnName = "No name";
+
+            int columnColor;
+            try {
+                columnColor = Color.parseColor(colors.get(rawLine.id));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                columnColor = Color.BLACK;
             }
 
-            if (valuesCount > 0 && x != null && !lines.isEmpty()) {
+            lines.add(new Column.Line(rawLine.id, columnName, columnColor, rawLine.toArray(valuesCount)));
+        }
 
-                if (x.values.length > valuesCount) {
-                    long[] trimmedValues = new long[valuesCount];
-                    System.arraycopy(x.values, 0, trimmedValues, 0, valuesCount);
-                    x = new Column.X(x.id, trimmedValues);
-                }
+        return new Chart(x, lines);
+    }
 
-                for (int j = 0; j < lines.size(); j++) {
-                    Column.Line line = lines.get(j);
-                    if (line.values.length > valuesCount) {
-                        long[] trimmedValues = new long[valuesCount];
-                        System.arraycopy(line.values, 0, trimmedValues, 0, valuesCount);
-                        lines.set(j, new Column.Line(line.id, line.name, line.color, trimmedValues));
-                    }
+    /**
+     * Array of all values of the column, the same array is returned for columns with identical values
+     */
+    private long[] internX(RawColumn column, Map<Long, long[]> xArrays) {
+        long hash = column.contentHash();
+        long[] interned = xArrays.get(hash);
+        if (interned != null && column.contentEquals(interned)) {
+            return interned;
+        }
+        long[] values = column.toArray(column.size);
+        if (interned == null) {
+            xArrays.put(hash, values);
+        }
+        return values;
+    }
+
+    private void readColumns(JsonReader reader, List<RawColumn> columns) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            if (!reader.hasNext()) {
+                reader.endArray();
+                continue;
+            }
+            String columnId = readString(reader);
+            RawColumn column = new RawColumn(columnId);
+            while (reader.hasNext()) {
+                if (reader.peek() == JsonToken.NUMBER) {
+                    column.add(reader.nextLong());
+                } else {
+                    reader.skipValue();
+                    column.add(0L);
                 }
+            }
+            reader.endArray();
+            if (columnId != null) {
+                columns.add(column);
+            }
+        }
+        reader.endArray();
+    }
 
-                charts.add(new Chart(x, lines));
+    private void readStringMap(JsonReader reader, Map<String, String> map) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            String value = readString(reader);
+            if (value != null) {
+                map.put(key, value);
             }
         }
+        reader.endObject();
+    }
+
+    private String readString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        } else {
+            reader.skipValue();
+            return null;
+        }
+    }
 
-        return new Data(charts);
+    public static final class Signature {
+
+        public final long size;
+        public final long hash;
+
+        private Signature(long size, long hash) {
+            this.size = size;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Growable column buffer, filled directly from the stream
+     */
+    private static class RawColumn {
+
+        private final String id;
+        private long[] values = new long[INITIAL_COLUMN_CAPACITY];
+        private int size = 0;
+
+        private RawColumn(String id) {
+            this.id = id;
+        }
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private long[] toArray(int count) {
+            return values.length == count ? values : Arrays.copyOf(values, count);
+        }
+
+        private long contentHash() {
+            long hash = size;
+            for (int i = 0; i < size; i++) {
+                hash = hash * 0x9E3779B97F4A7C15L + values[i];
+            }
+            return hash ^ (hash >>> 29);
+        }
+
+        private boolean contentEquals(long[] array) {
+            if (array.length != size) return false;
+            for (int i = 0; i < size; i++) {
+                if (values[i] != array[i]) return false;
+            }
+            return true;
+        }
     }
 
 }
@@ -0,0 +1,337 @@
+package by.anegin.tgcontest.data.source.impl;
+
+import by.anegin.tgcontest.data.model.Chart;
+import by.anegin.tgcontest.data.model.ChartInfo;
+import by.anegin.tgcontest.data.model.Column;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary columnar representation of parsed charts.
+ * <p>
+ * Layout: header (magic, version, source size and hash, index offset), followed by 8-byte aligned blocks
+ * of little-endian longs in order of charts: x values shared by charts, written once before the first chart using them,
+ * and values of every line of the chart. Chart takes the first values of its x block.
+ * Index with charts/columns metadata and data offsets is written at the end, when all charts are known.
+ */
+class BinaryDataFile {
+
+    private static final int MAGIC = 0x54474344;   // "TGCD"
+    private static final int VERSION = 3;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+    private static final int INDEX_OFFSET_POSITION = 4 + 4 + 8 + 8;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+    private final List<ChartEntry> entries;
+
+    // decoded x blocks by offset, shared by charts while any of them is used
+    private final Map<Long, WeakReference<long[]>> xArrays = new HashMap<>();
+
+    private BinaryDataFile(ByteBuffer buffer, List<ChartEntry> entries) {
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    int getChartsCount() {
+        return entries.size();
+    }
+
+    ChartInfo getChartInfo(int index) {
+        return entries.get(index).info;
+    }
+
+    /**
+     * Decodes values of the chart from mapped buffer
+     */
+    synchronized Chart readChart(int index) {
+        ChartEntry entry = entries.get(index);
+        int valuesCount = entry.info.valuesCount;
+
+        Column.X x = new Column.X(entry.xId, readSharedX(entry.xOffset, entry.xLength), valuesCount);
+
+        long offset = entry.dataOffset;
+        List<Column.Line> lines = new ArrayList<>(entry.info.lines.size());
+        for (ChartInfo.Line line : entry.info.lines) {
+            lines.add(new Column.Line(line.id, line.name, line.color, readLongs(offset, valuesCount)));
+            offset += 8L * valuesCount;
+        }
+        return new Chart(x, lines);
+    }
+
+    private long[] readSharedX(long offset, int length) {
+        WeakReference<long[]> reference = xArrays.get(offset);
+        long[] values = reference != null ? reference.get() : null;
+        if (values == null) {
+            values = readLongs(offset, length);
+            xArrays.put(offset, new WeakReference<>(values));
+        }
+        return values;
+    }
+
+    private long[] readLongs(long offset, int count) {
+        long[] values = new long[count];
+        ByteBuffer block = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        block.position((int) offset);
+        block.asLongBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Maps existing file into memory and reads its header
+     *
+     * @return null if file doesn't exist, is corrupted or was built from another source
+     */
+    static BinaryDataFile open(File file, long sourceSize, long sourceHash) throws IOException {
+        if (!file.isFile()) return null;
+
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) return null;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != sourceSize || buffer.getLong() != sourceHash) return null;
+
+            long indexOffset = buffer.getLong();
+            if (indexOffset < HEADER_SIZE || indexOffset > buffer.capacity()) return null;
+            buffer.position((int) indexOffset);
+
+            int chartsCount = buffer.getInt();
+            if (chartsCount < 0) return null;
+
+            List<ChartEntry> entries = new ArrayList<>(chartsCount);
+            for (int i = 0; i < chartsCount; i++) {
+                int valuesCount = buffer.getInt();
+                int linesCount = buffer.getInt();
+                long xOffset = buffer.getLong();
+                int xLength = buffer.getInt();
+                long dataOffset = buffer.getLong();
+                if (valuesCount < 0 || linesCount < 0 || xLength < valuesCount) return null;
+
+                String xId = getString(buffer);
+                List<ChartInfo.Line> lines = new ArrayList<>(linesCount);
+                for (int j = 0; j < linesCount; j++) {
+                    String id = getString(buffer);
+                    String name = getString(buffer);
+                    int color = buffer.getInt();
+                    lines.add(new ChartInfo.Line(id, name, color));
+                }
+
+                if (xOffset % 8 != 0 || xOffset < HEADER_SIZE
+                        || xOffset + 8L * xLength > indexOffset) return null;
+                long dataSize = 8L * valuesCount * linesCount;
+                if (dataOffset % 8 != 0 || dataOffset < HEADER_SIZE
+                        || dataOffset + dataSize > indexOffset) return null;
+
+                entries.add(new ChartEntry(new ChartInfo(valuesCount, lines), xId, xOffset, xLength, dataOffset));
+            }
+            return new BinaryDataFile(buffer, entries);
+
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Streaming writer, charts are written as soon as they are read, so they are not kept in memory all at once.
+     * File is written under temporary name and replaces target file only when it is complete.
+     */
+    static class Writer {
+
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final File file;
+        private final File tmpFile;
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position = 0;
+
+        private final List<ChartEntry> entries = new ArrayList<>();
+
+        // offsets of x arrays which are written already, x arrays are shared by charts
+        private final Map<long[], Long> xOffsets = new IdentityHashMap<>();
+
+        private Writer(File file, long sourceSize, long sourceHash) throws IOException {
+            this.file = file;
+            this.tmpFile = new File(file.getPath() + ".tmp");
+            raf = new RandomAccessFile(tmpFile, "rw");
+            channel = raf.getChannel();
+            try {
+                raf.setLength(0);
+                out.putInt(MAGIC);
+                out.putInt(VERSION);
+                out.putLong(sourceSize);
+                out.putLong(sourceHash);
+                out.putLong(0);     // index offset, written by finish()
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+        }
+
+        static Writer create(File file, long sourceSize, long sourceHash) throws IOException {
+            return new Writer(file, sourceSize, sourceHash);
+        }
+
+        void addChart(Chart chart) throws IOException {
+            long[] xValues = chart.x.values;
+            Long xOffset = xOffsets.get(xValues);
+            if (xOffset == null) {
+                xOffset = position + out.position();
+                xOffsets.put(xValues, xOffset);
+                putLongs(xValues, xValues.length);
+            }
+
+            long dataOffset = position + out.position();
+            for (Column.Line line : chart.lines) {
+                putLongs(line.values, chart.x.size);
+            }
+
+            entries.add(new ChartEntry(new ChartInfo(chart), chart.x.id, xOffset, xValues.length, dataOffset));
+        }
+
+        /**
+         * Writes index of charts and moves complete file to its place
+         */
+        void finish() throws IOException {
+            try {
+                long indexOffset = position + out.position();
+                putIndex();
+                flush();
+
+                ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                header.putLong(indexOffset);
+                header.flip();
+                channel.write(header, INDEX_OFFSET_POSITION);
+
+                channel.force(false);
+                channel.close();
+                raf.close();
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+
+            if (!tmpFile.renameTo(file)) {
+                //noinspection ResultOfMethodCallIgnored
+                tmpFile.delete();
+                throw new IOException("Failed to rename " + tmpFile + " to " + file);
+            }
+        }
+
+        void abort() {
+            try {
+                channel.close();
+                raf.close();
+            } catch (IOException ignored) {
+            }
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+        }
+
+        private void putIndex() throws IOException {
+            ensureRemaining(4);
+            out.putInt(entries.size());
+            for (ChartEntry entry : entries) {
+                ensureRemaining(4 + 4 + 8 + 4 + 8);
+                out.putInt(entry.info.valuesCount);
+                out.putInt(entry.info.lines.size());
+                out.putLong(entry.xOffset);
+                out.putInt(entry.xLength);
+                out.putLong(entry.dataOffset);
+                putString(entry.xId);
+                for (ChartInfo.Line line : entry.info.lines) {
+                    putString(line.id);
+                    putString(line.name);
+                    ensureRemaining(4);
+                    out.putInt(line.color);
+                }
+            }
+        }
+
+        private void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(UTF_8);
+            ensureRemaining(4);
+            out.putInt(bytes.length);
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensureRemaining(1);
+                int count = Math.min(out.remaining(), bytes.length - offset);
+                out.put(bytes, offset, count);
+                offset += count;
+            }
+        }
+
+        private void putLongs(long[] values, int count) throws IOException {
+            int offset = 0;
+            while (offset < count) {
+                ensureRemaining(8);
+                int chunk = Math.min(out.remaining() / 8, count - offset);
+                out.asLongBuffer().put(values, offset, chunk);
+                out.position(out.position() + 8 * chunk);
+                offset += chunk;
+            }
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (out.remaining() < bytes) flush();
+        }
+
+        private void flush() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                position += channel.write(out, position);
+            }
+            out.clear();
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) throw new IllegalArgumentException("Bad string length: " + length);
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static class ChartEntry {
+
+        private final ChartInfo info;
+        private final String xId;
+        private final long xOffset;
+        private final int xLength;
+        private final long dataOffset;
+
+        private ChartEntry(ChartInfo info, String xId, long xOffset, int xLength, long dataOffset) {
+            this.info = info;
+            this.xId = xId;
+            this.xOffset = xOffset;
+            this.xLength = xLength;
+            this.dataOffset = dataOffset;
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package by.anegin.tgcontest.data.source.impl;
+
+import android.util.Log;
+import by.anegin.tgcontest.data.model.Chart;
+import by.anegin.tgcontest.data.model.ChartInfo;
+import by.anegin.tgcontest.data.source.DataSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps parsed data in a memory-mapped binary file, so JSON is parsed only once per asset content
+ * and values of every chart are decoded only when requested.
+ * <p>
+ * On the first launch every parsed chart is written to the file as soon as it is read, so charts are not kept in memory.
+ */
+public class CachedDataSource implements DataSource {
+
+    private static final String TAG = CachedDataSource.class.getSimpleName();
+
+    private final AssetsDataSource assetsDataSource;
+    private final File cacheFile;
+
+    private List<ChartInfo> chartInfos;
+
+    private BinaryDataFile dataFile;
+    private List<Chart> charts;     // used only if cache file can't be written
+
+    public CachedDataSource(AssetsDataSource assetsDataSource, File cacheFile) {
+        this.assetsDataSource = assetsDataSource;
+        this.cacheFile = cacheFile;
+    }
+
+    @Override
+    public synchronized List<ChartInfo> getChartInfos(OnChartLoadedListener listener) throws IOException {
+        if (chartInfos == null) {
+            open(listener);
+        }
+        return chartInfos;
+    }
+
+    @Override
+    public synchronized Chart getChart(int index) throws IOException {
+        if (chartInfos == null) {
+            open(null);
+        }
+        if (dataFile != null) {
+            return dataFile.readChart(index);
+        } else {
+            return charts.get(index);
+        }
+    }
+
+    private void open(OnChartLoadedListener listener) throws IOException {
+        AssetsDataSource.Signature signature = assetsDataSource.getSignature();
+
+        dataFile = openDataFile(signature);
+        if (dataFile == null && writeDataFile(signature, listener)) {
+            dataFile = openDataFile(signature);
+        }
+
+        if (dataFile != null) {
+            chartInfos = new ArrayList<>(dataFile.getChartsCount());
+            for (int i = 0; i < dataFile.getChartsCount(); i++) {
+                chartInfos.add(dataFile.getChartInfo(i));
+            }
+        } else {
+            // charts which are read already are not kept, so asset is read again into memory
+            List<Chart> charts = new ArrayList<>();
+            assetsDataSource.readCharts((index, chart) -> charts.add(chart));
+            this.charts = charts;
+
+            chartInfos = new ArrayList<>(charts.size());
+            for (Chart chart : charts) {
+                chartInfos.add(new ChartInfo(chart));
+            }
+        }
+    }
+
+    /**
+     * Parses asset into cache file chart by chart, passing every chart to listener after it is written
+     *
+     * @return false if cache file can't be written
+     */
+    private boolean writeDataFile(AssetsDataSource.Signature signature, OnChartLoadedListener listener) throws IOException {
+        BinaryDataFile.Writer writer;
+        try {
+            writer = BinaryDataFile.Writer.create(cacheFile, signature.size, signature.hash);
+        } catch (IOException e) {
+            Log.i(TAG, "Failed to create data cache", e);
+            return false;
+        }
+
+        try {
+            assetsDataSource.readCharts((index, chart) -> {
+                try {
+                    writer.addChart(chart);
+                } catch (IOException e) {
+                    throw new CacheWriteException(e);
+                }
+                if (listener != null) {
+                    listener.onChartLoaded(index, chart);
+                }
+            });
+        } catch (CacheWriteException e) {
+            Log.i(TAG, "Failed to write data cache", e.getCause());
+            writer.abort();
+            return false;
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+
+        try {
+            writer.finish();
+            return true;
+        } catch (IOException e) {
+            Log.i(TAG, "Failed to write data cache", e);
+            return false;
+        }
+    }
+
+    private BinaryDataFile openDataFile(AssetsDataSource.Signature signature) {
+        try {
+            return BinaryDataFile.open(cacheFile, signature.size, signature.hash);
+        } catch (IOException e) {
+            Log.i(TAG, "Failed to open data cache", e);
+            return null;
+        }
+    }
+
+    /**
+     * Separates cache write errors from asset read errors, which are passed to caller
+     */
+    private static class CacheWriteException extends RuntimeException {
+        private CacheWriteException(IOException cause) {
+            super(cause);
+        }
+    }
+
+}
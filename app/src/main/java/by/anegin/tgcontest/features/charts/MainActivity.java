@@ -6,6 +6,7 @@ import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.TextureView;
 import android.view.View;
 import android.widget.CheckBox;
 import android.widget.CompoundButton;
@@ -15,26 +16,26 @@ import android.widget.Toast;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 import by.anegin.tgcontest.ChartsApp;
 import by.anegin.tgcontest.R;
 import by.anegin.tgcontest.core.di.AppComponent;
+import by.anegin.tgcontest.core.ui.ChartPreparer;
 import by.anegin.tgcontest.core.ui.model.UiChart;
+import by.anegin.tgcontest.core.ui.objects.GraphGeometry;
 import by.anegin.tgcontest.core.ui.view.ChartView;
 import by.anegin.tgcontest.core.ui.view.MiniChartView;
 import by.anegin.tgcontest.core.utils.CompoundButtonHelper;
+import by.anegin.tgcontest.core.utils.ComputeScheduler;
 import by.anegin.tgcontest.core.utils.ThemeHelper;
 import by.anegin.tgcontest.data.DataRepository;
-import by.anegin.tgcontest.data.model.Chart;
-import by.anegin.tgcontest.data.model.Column;
-import by.anegin.tgcontest.data.model.Data;
+import by.anegin.tgcontest.data.model.ChartInfo;
 
-public class MainActivity extends Activity implements CompoundButton.OnCheckedChangeListener {
+public class MainActivity extends Activity implements CompoundButton.OnCheckedChangeListener, ChartPreparer.Callback {
 
     private static final int MENUITEM_ID_FIRST = 42;
 
@@ -45,15 +46,21 @@ public class MainActivity extends Activity implements CompoundButton.OnCheckedCh
 
     private ThemeHelper themeHelper;
 
-    private final Executor loadExecutor = Executors.newSingleThreadExecutor();
-    private final Executor showExecutor = Executors.newSingleThreadExecutor();
+    private ComputeScheduler computeScheduler;
+
+    // selecting another chart replaces preparation of the previous one
+    private ChartPreparer chartPreparer;
 
     private ChartView chartView;
     private LinearLayout layoutGraphs;
     private TextView textChartName;
 
-    private Data data;
+    private List<ChartInfo> chartInfos = Collections.emptyList();
     private int currentChartIndex = 0;
+    private int shownChartIndex = -1;
+
+    // charts may still be read after activity is destroyed
+    private volatile boolean destroyed = false;
 
     private final Set<String> hiddenGraphIds = new HashSet<>();
 
@@ -70,6 +77,11 @@ public class MainActivity extends Activity implements CompoundButton.OnCheckedCh
         setTitle(R.string.statistics);
 
         chartView = findViewById(R.id.chartView);
+        if (getResources().getBoolean(R.bool.chart_render_thread)) {
+            TextureView chartRenderTarget = findViewById(R.id.chartRenderTarget);
+            chartRenderTarget.setVisibility(View.VISIBLE);
+            chartView.setRenderTarget(chartRenderTarget);
+        }
         textChartName = findViewById(R.id.textChartName);
 
         MiniChartView miniChartView = findViewById(R.id.miniChartView);
@@ -93,6 +105,15 @@ public class MainActivity extends Activity implements CompoundButton.OnCheckedCh
         AppComponent appComponent = ((ChartsApp) getApplication()).getAppComponent();
         dataRepository = appComponent.getDataRepository();
         themeHelper = appComponent.getThemeHelper();
+        computeScheduler = appComponent.getComputeScheduler();
+        chartPreparer = appComponent.getChartPreparer();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        destroyed = true;
+        chartPreparer.cancel(this);
     }
 
     @Override
@@ -110,8 +131,7 @@ public class MainActivity extends Activity implements CompoundButton.OnCheckedCh
 
     @Override
     public boolean onPrepareOptionsMenu(Menu menu) {
-        Data data = this.data;
-        int chartsCount = (data != null && data.charts != null) ? data.charts.size() : 0;
+        int chartsCount = chartInfos.size();
         menu.removeGroup(R.id.action_group_chart_selection);
         MenuItem checkedItem = null;
         for (int i = 0; i < chartsCount; i++) {
@@ -133,8 +153,7 @@ public class MainActivity extends Activity implements CompoundButton.OnCheckedCh
     public boolean onOptionsItemSelected(MenuItem item) {
         int itemId = item.getItemId();
 
-        Data data = this.data;
-        int chartsCount = (data != null && data.charts != null) ? data.charts.size() : 0;
+        int chartsCount = chartInfos.size();
 
         if (chartsCount > 0 && itemId >= MENUITEM_ID_FIRST && itemId < MENUITEM_ID_FIRST + chartsCount) {
             int index = itemId - MENUITEM_ID_FIRST;
@@ -153,41 +172,54 @@ public class MainActivity extends Activity implements CompoundButton.OnCheckedCh
     }
 
     private void loadData() {
-        loadExecutor.execute(() -> {
+        // charts can't be selected until all of them are read, so current chart is shown as soon as it is read
+        int firstChartIndex = currentChartIndex;
+        computeScheduler.execute(() -> {
             try {
-                Data data = dataRepository.getData();
-                onDataLoaded(data);
+                List<ChartInfo> chartInfos = dataRepository.getChartInfos((index, chart) -> {
+                    if (index == firstChartIndex && !destroyed) {
+                        chartPreparer.prepare(index, chart, this);
+                    }
+                });
+                runOnUiThread(() -> onChartInfosLoaded(chartInfos));
             } catch (IOException e) {
                 runOnUiThread(() -> Toast.makeText(this, "Error loading data file", Toast.LENGTH_SHORT).show());
             }
         });
     }
 
-    private void onDataLoaded(Data data) {
-        this.data = data;
-        showChart(currentChartIndex);
+    private void onChartInfosLoaded(List<ChartInfo> chartInfos) {
+        this.chartInfos = chartInfos;
+        if (shownChartIndex != currentChartIndex) {
+            showChart(currentChartIndex);
+        }
+        invalidateOptionsMenu();
     }
 
     private void showChart(int index) {
         currentChartIndex = index;
+        if (index >= chartInfos.size()) return;
 
-        showExecutor.execute(() -> {
-            Data data = this.data;
-            if (data == null || data.charts == null || index >= data.charts.size()) return;
+        chartPreparer.prepare(index, this);
+    }
 
-            Chart chart = data.charts.get(index);
-            UiChart uiChart = new UiChart(chart);
+    @Override
+    public void onChartPrepared(int index, UiChart uiChart) {
+        if (destroyed) return;
+        shownChartIndex = index;
+        chartView.setUiChart(uiChart, hiddenGraphIds);
 
-            runOnUiThread(() -> {
-                chartView.setUiChart(uiChart, hiddenGraphIds);
+        textChartName.setText(getString(R.string.chart, String.valueOf(index + 1)));
 
-                textChartName.setText(getString(R.string.chart, String.valueOf(index + 1)));
+        updateGraphsList(uiChart);
 
-                updateGraphsList(chart);
+        invalidateOptionsMenu();
+    }
 
-                invalidateOptionsMenu();
-            });
-        });
+    @Override
+    public void onChartError(int index) {
+        if (destroyed) return;
+        Toast.makeText(this, "Error loading chart", Toast.LENGTH_SHORT).show();
     }
 
     private void toggleTheme() {
@@ -195,9 +227,9 @@ public class MainActivity extends Activity implements CompoundButton.OnCheckedCh
         recreate();
     }
 
-    private void updateGraphsList(Chart chart) {
+    private void updateGraphsList(UiChart uiChart) {
         layoutGraphs.removeAllViews();
-        for (Column.Line line : chart.lines) {
+        for (GraphGeometry line : uiChart.graphs) {
             View itemView = getLayoutInflater().inflate(R.layout.item_graph, layoutGraphs, false);
 
             CheckBox checkBoxGraph = itemView.findViewById(R.id.checkboxGraph);